@@ -24,7 +24,9 @@ import android.content.Intent;
 import android.util.Log;
 
 import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.DeviceProfile;
 import co.aospa.glyph.Utils.ServiceUtils;
+import co.aospa.glyph.Utils.StartupTrace;
 
 public class BootCompletedReceiver extends BroadcastReceiver {
 
@@ -34,7 +36,23 @@ public class BootCompletedReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(final Context context, Intent intent) {
         if (DEBUG) Log.d(TAG, "Received boot completed intent");
+        StartupTrace.begin();
+        // Everything else is resolved lazily from here, in this order
         Constants.CONTEXT = context.getApplicationContext();
+
+        String[] modules = ServiceUtils.getDesiredModules();
+        StartupTrace.mark("settings");
+        StartupTrace.expect(modules);
+        if (modules.length == 0) {
+            // Notifications and the essential LED still need the saved brightness
+            ServiceUtils.applyBrightness();
+            if (DEBUG) Log.d(TAG, "No Glyph module enabled, skipping the engine");
+            return;
+        }
+
+        // Resolve the device profile before anything draws
+        DeviceProfile.get();
+        StartupTrace.mark("device profile");
         ServiceUtils.checkGlyphService();
     }
 }
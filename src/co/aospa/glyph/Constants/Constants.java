@@ -18,8 +18,6 @@ package co.aospa.glyph.Constants;
 
 import android.content.Context;
 
-import co.aospa.glyph.Utils.ResourceUtils;
-
 public final class Constants {
 
     private static final String TAG = "GlyphConstants";
@@ -28,12 +26,7 @@ public final class Constants {
     public static Context CONTEXT;
     public static final int MAX_PATTERN_BRIGHTNESS = 4095;
 
-    private static String device = null;
-
     private static int brightness = -1;
-    private static int brightnessMax = -1;
-    private static int[] brightnessLevels = null;
-    private static int[] supportedAnimationPatternLengths = null;
 
     public static final String GLYPH_ENABLE = "glyph_enable";
     public static final String GLYPH_FLIP_ENABLE = "glyph_settings_flip_toggle";
@@ -41,6 +34,7 @@ public final class Constants {
     public static final String GLYPH_CHARGING_CATEGORY = "glyph_settings_charging";
     public static final String GLYPH_CHARGING_LEVEL_ENABLE = "glyph_settings_charging_level";
     public static final String GLYPH_CHARGING_POWERSHARE_ENABLE = "glyph_settings_charging_powershare";
+    public static final String GLYPH_CHARGING_RATE_ENABLE = "glyph_settings_charging_rate";
     public static final String GLYPH_CALL_CATEGORY = "glyph_settings_call";
     public static final String GLYPH_CALL_ENABLE = "glyph_settings_call_toggle";
     public static final String GLYPH_CALL_SUB_PREVIEW = "glyph_settings_call_sub_preview";
@@ -69,15 +63,18 @@ public final class Constants {
         "com.android.systemui:BAT"
     };
 
-    public static String getDevice() {
-        if (device == null)
-            device = ResourceUtils.getString("glyph_settings_device");
+    // Fails loudly instead of with a null pointer deep inside a static initializer
+    public static Context getContext() {
+        if (CONTEXT == null) throw new IllegalStateException("Glyph context is not set yet");
+        return CONTEXT;
+    }
 
-        return device;
+    public static String getDevice() {
+        return DeviceProfile.get().getName();
     }
 
     public static boolean setBrightness(int b) {
-        if (b > ResourceUtils.getInteger("glyph_settings_brightness_max"))
+        if (b > getMaxBrightness())
             return false;
 
         brightness = b;
@@ -86,30 +83,17 @@ public final class Constants {
 
     public static int getBrightness() {
         if (brightness == -1)
-            brightness = ResourceUtils.getInteger("glyph_settings_brightness_max");
+            brightness = getMaxBrightness();
 
         return brightness;
     }
 
     public static int getMaxBrightness() {
-        if (brightnessMax == -1)
-            brightnessMax = ResourceUtils.getInteger("glyph_settings_brightness_max");
-
-        return brightnessMax;
+        return DeviceProfile.get().getBrightnessMax();
     }
 
     public static int[] getBrightnessLevels() {
-        if (brightnessLevels == null)
-            brightnessLevels = ResourceUtils.getIntArray("glyph_settings_brightness_levels");
-
-        return brightnessLevels;
-    }
-
-    public static int[] getSupportedAnimationPatternLengths() {
-        if (supportedAnimationPatternLengths == null)
-            supportedAnimationPatternLengths = ResourceUtils.getIntArray("glyph_settings_animations_supported_pattern_lengths");
-
-        return supportedAnimationPatternLengths;
+        return DeviceProfile.get().getBrightnessLevels();
     }
 
 }
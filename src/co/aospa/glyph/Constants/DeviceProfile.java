@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Constants;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import co.aospa.glyph.Utils.ResourceUtils;
+
+// Everything the device overlay defines, resolved from resources once. Hot paths
+// read these getters instead of looking resources up by name on every frame.
+// The arrays are shared, callers must never modify them. Callers only see the
+// GlyphDevice interface.
+public final class DeviceProfile implements GlyphDevice {
+
+    private static final String TAG = "GlyphDeviceProfile";
+    private static final boolean DEBUG = true;
+
+    private final String mName;
+
+    // Sysfs nodes
+    private final String mAllPath;
+    private final String mFramePath;
+    private final String mModePath;
+    private final String mSinglePath;
+    private final String mPowershareActivePath;
+    private final String mPowershareEnabledPath;
+
+    // Zones
+    private final int[] mPatternLengths;
+    private final boolean[] mSupportedLengths;
+    // Gather index into a pattern for each zone of a full frame, keyed by pattern length
+    private final HashMap<Integer, int[]> mZoneMaps = new HashMap<>();
+    // Essential zone indexed by pattern length, -1 for unsupported lengths
+    private final int[] mEssentialZones;
+    private final int mEssentialLed;
+    private final int[] mMusicZones;
+    private final HashMap<String, int[]> mMeterZones = new HashMap<>();
+    private final HashMap<String, Integer> mMeterFrameLengths = new HashMap<>();
+
+    // Brightness
+    private final int mBrightnessMax;
+    private final int[] mBrightnessLevels;
+    private final int mBrightnessGamma;
+    private final int[] mBrightnessZoneGains;
+
+    // Sensors
+    private final String mLightSensor;
+    private final int[] mAutoBrightnessLux;
+
+    private DeviceProfile() {
+        mName = ResourceUtils.getString("glyph_settings_device");
+
+        mAllPath = ResourceUtils.getString("glyph_settings_paths_all_absolute");
+        mFramePath = ResourceUtils.getString("glyph_settings_paths_frame_absolute");
+        mModePath = ResourceUtils.getString("glyph_settings_paths_mode_absolute");
+        mSinglePath = ResourceUtils.getString("glyph_settings_paths_single_absolute");
+        mPowershareActivePath = ResourceUtils.getString("glyph_settings_paths_powershare_active_absolute");
+        mPowershareEnabledPath = ResourceUtils.getString("glyph_settings_paths_powershare_enabled_absolute");
+
+        mPatternLengths = ResourceUtils.getIntArray("glyph_settings_animations_supported_pattern_lengths");
+        int[] essentialZones = ResourceUtils.getIntArray("glyph_settings_notifs_essential_zones");
+        mSupportedLengths = new boolean[getFrameLength() + 1];
+        mEssentialZones = new int[getFrameLength() + 1];
+        Arrays.fill(mEssentialZones, -1);
+        for (int i = 0; i < mPatternLengths.length; i++) {
+            mSupportedLengths[mPatternLengths[i]] = true;
+            if (i < essentialZones.length) mEssentialZones[mPatternLengths[i]] = essentialZones[i];
+        }
+        putZoneMap(getFrameLength(), null);
+        for (int length : ResourceUtils.getIntArray("glyph_settings_zone_maps")) {
+            putZoneMap(length, ResourceUtils.getIntArray("glyph_settings_zone_map_" + length));
+        }
+        mEssentialLed = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
+        mMusicZones = ResourceUtils.getIntArray("glyph_settings_music_zones");
+
+        putMeter(METER_BATTERY, ResourceUtils.getInteger("glyph_settings_battery_levels_num"), new int[0]);
+        int volumeLevels = ResourceUtils.getInteger("glyph_settings_volume_levels_num");
+        // Plain volume bar, used for streams the overlay doesn't list
+        putMeter(METER_VOLUME, volumeLevels, new int[0]);
+        for (String stream : ResourceUtils.getStringArray("glyph_settings_volume_streams")) {
+            putMeter(METER_VOLUME + stream, volumeLevels,
+                    ResourceUtils.getIntArray("glyph_settings_volume_" + stream + "_zones"));
+        }
+
+        mBrightnessMax = ResourceUtils.getInteger("glyph_settings_brightness_max");
+        mBrightnessLevels = ResourceUtils.getIntArray("glyph_settings_brightness_levels");
+        mBrightnessGamma = ResourceUtils.getInteger("glyph_settings_brightness_gamma");
+        mBrightnessZoneGains = ResourceUtils.getIntArray("glyph_settings_brightness_zone_gains");
+
+        mLightSensor = ResourceUtils.getString("glyph_light_sensor");
+        mAutoBrightnessLux = ResourceUtils.getIntArray("glyph_auto_brightness_levels");
+
+        if (DEBUG) Log.d(TAG, "Resolved device profile | device: " + mName
+                + " | frame: " + getFrameLength() + " | essential: " + mEssentialLed
+                + " | zone maps: " + mZoneMaps.keySet() + " | meters: " + mMeterZones.keySet());
+    }
+
+    // A null map is the identity, the pattern already has one value per zone
+    private void putZoneMap(int length, int[] map) {
+        if (map == null) {
+            map = new int[getFrameLength()];
+            for (int i = 0; i < map.length; i++) map[i] = i;
+        }
+        if (map.length != getFrameLength()) {
+            Log.w(TAG, "Ignoring zone map | length: " + length + " | zones: " + map.length);
+            return;
+        }
+        for (int zone : map) {
+            if (zone < 0 || zone >= length) {
+                Log.w(TAG, "Ignoring zone map | length: " + length + " | zone: " + zone);
+                return;
+            }
+        }
+        mZoneMaps.put(length, map);
+    }
+
+    // Meters without zones are drawn as their own bar, one LED per level
+    private void putMeter(String meter, int levels, int[] zones) {
+        if (zones.length == 0) {
+            zones = new int[levels];
+            for (int i = 0; i < levels; i++) zones[i] = i;
+            mMeterFrameLengths.put(meter, levels);
+        } else {
+            mMeterFrameLengths.put(meter, getFrameLength());
+        }
+        mMeterZones.put(meter, zones);
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public int[] getPatternLengths() {
+        return mPatternLengths;
+    }
+
+    @Override
+    public boolean isPatternLengthSupported(int length) {
+        return length < mSupportedLengths.length && mSupportedLengths[length];
+    }
+
+    @Override
+    public int getFrameLength() {
+        return mPatternLengths[mPatternLengths.length - 1];
+    }
+
+    @Override
+    public int[] getZoneMap(int patternLength) {
+        return mZoneMaps.get(patternLength);
+    }
+
+    @Override
+    public int getEssentialZone(int patternLength) {
+        return patternLength < mEssentialZones.length ? mEssentialZones[patternLength] : -1;
+    }
+
+    @Override
+    public int getEssentialLed() {
+        return mEssentialLed;
+    }
+
+    // Single LEDs are numbered by the driver, only the essential one is mapped by the overlay
+    @Override
+    public int getLedZone(int led) {
+        return led == mEssentialLed ? getEssentialZone(getFrameLength()) : -1;
+    }
+
+    @Override
+    public int[] getMusicZones() {
+        return mMusicZones;
+    }
+
+    @Override
+    public int[] getMeterZones(String meter) {
+        int[] zones = mMeterZones.get(meter);
+        return zones != null ? zones : mMeterZones.get(METER_VOLUME);
+    }
+
+    @Override
+    public int getMeterFrameLength(String meter) {
+        Integer length = mMeterFrameLengths.get(meter);
+        return length != null ? length : mMeterFrameLengths.get(METER_VOLUME);
+    }
+
+    @Override
+    public String getAllPath() {
+        return mAllPath;
+    }
+
+    @Override
+    public String getFramePath() {
+        return mFramePath;
+    }
+
+    @Override
+    public String getModePath() {
+        return mModePath;
+    }
+
+    @Override
+    public String getSinglePath() {
+        return mSinglePath;
+    }
+
+    @Override
+    public String getPowershareActivePath() {
+        return mPowershareActivePath;
+    }
+
+    @Override
+    public String getPowershareEnabledPath() {
+        return mPowershareEnabledPath;
+    }
+
+    @Override
+    public int getBrightnessMax() {
+        return mBrightnessMax;
+    }
+
+    @Override
+    public int[] getBrightnessLevels() {
+        return mBrightnessLevels;
+    }
+
+    @Override
+    public int getBrightnessGamma() {
+        return mBrightnessGamma;
+    }
+
+    @Override
+    public int[] getBrightnessZoneGains() {
+        return mBrightnessZoneGains;
+    }
+
+    @Override
+    public String getLightSensor() {
+        return mLightSensor;
+    }
+
+    @Override
+    public int[] getAutoBrightnessLux() {
+        return mAutoBrightnessLux;
+    }
+
+    private static final class Holder {
+        static final DeviceProfile INSTANCE = new DeviceProfile();
+    }
+
+    public static GlyphDevice get() {
+        return Holder.INSTANCE;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Constants;
+
+// Zone topology and LED nodes of a Glyph device. Nothing outside the implementation
+// should know which phone it runs on, new hardware only needs a new overlay.
+public interface GlyphDevice {
+
+    public static final String METER_BATTERY = "battery";
+    public static final String METER_VOLUME = "volume_";
+
+    String getName();
+
+    // Frame lengths the LED driver takes, shortest first. The last one covers every zone.
+    int[] getPatternLengths();
+
+    boolean isPatternLengthSupported(int length);
+
+    int getFrameLength();
+
+    // Pattern zone each zone of a full frame is read from for patterns of the given
+    // length, null when patterns of that length can't be shown
+    int[] getZoneMap(int patternLength);
+
+    // Zone kept lit by the essential notification in a frame of the given length, -1 if none
+    int getEssentialZone(int patternLength);
+
+    // Same LED for single LED writes
+    int getEssentialLed();
+
+    // Zone of the full frame a single LED write lands on, -1 if it is not known
+    int getLedZone(int led);
+
+    // Zones of the shortest frame lit by the visualizer bands, lowest band first
+    int[] getMusicZones();
+
+    // Zones a meter bar is drawn on, lowest level first
+    int[] getMeterZones(String meter);
+
+    // Length of the frame written for a meter, either its own bar or a full frame
+    int getMeterFrameLength(String meter);
+
+    String getAllPath();
+
+    String getFramePath();
+
+    String getModePath();
+
+    String getSinglePath();
+
+    // Wireless powershare state, blank when the device has none
+    String getPowershareActivePath();
+
+    String getPowershareEnabledPath();
+
+    // Highest value the LED driver takes
+    int getBrightnessMax();
+
+    // Driver values of the brightness slider steps, lowest first
+    int[] getBrightnessLevels();
+
+    // Gamma and zone gains in percent, 100 means no correction
+    int getBrightnessGamma();
+
+    // Gain of every zone of a full frame, zones past the end keep unity
+    int[] getBrightnessZoneGains();
+
+    // String type of the light sensor used for auto brightness, blank when there is none
+    String getLightSensor();
+
+    // Lux threshold of every brightness level, lowest first
+    int[] getAutoBrightnessLux();
+}
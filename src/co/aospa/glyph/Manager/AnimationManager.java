@@ -16,19 +16,23 @@
 
 package co.aospa.glyph.Manager;
 
+import android.os.Handler;
 import android.util.Log;
+import android.util.SparseArray;
 
-import com.android.internal.util.ArrayUtils;
-
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.DeviceProfile;
+import co.aospa.glyph.Constants.GlyphDevice;
+import co.aospa.glyph.Utils.AnimationTimeline;
 import co.aospa.glyph.Utils.FileUtils;
+import co.aospa.glyph.Utils.GlyphAnimation;
+import co.aospa.glyph.Utils.ProceduralAnimation;
 import co.aospa.glyph.Utils.ResourceUtils;
 
 public final class AnimationManager {
@@ -36,9 +40,44 @@ public final class AnimationManager {
     private static final String TAG = "GlyphAnimationManager";
     private static final boolean DEBUG = true;
 
+    private static final GlyphDevice device = DeviceProfile.get();
+
+    private static final String[] MUSIC_BANDS = {"low", "mid_low", "mid", "mid_high", "high"};
+
+    // Frames are written from the animation, render and engine threads, each length
+    // gets one buffer the first time it is drawn and keeps it
+    private static final Object frameLock = new Object();
+    private static final SparseArray<int[]> frameBuffers = new SparseArray<>();
+    private static final int[] blankFrame = new int[device.getFrameLength()];
+    // Only touched on the animation thread
+    private static final int[] playbackFrame = new int[device.getFrameLength()];
+
+    // Essential LED fading in from 12% to 60% over five frames
+    private static final ProceduralAnimation essentialRamp = ProceduralAnimation.ramp("essential",
+            1, new int[] { 0 }, 83, Constants.MAX_PATTERN_BRIGHTNESS / 100 * 12,
+            Constants.MAX_PATTERN_BRIGHTNESS / 100 * 60, ProceduralAnimation.EASE_LINEAR);
+    private static final int[] essentialFrame = new int[1];
+    private static final int[] musicFrame = new int[device.getPatternLengths()[0]];
+    private static final int[] blankMusicFrame = new int[musicFrame.length];
+
+    private static final MeterLayer batteryMeter =
+            new MeterLayer(device, GlyphDevice.METER_BATTERY, 100, false);
+    private static final HashMap<String, MeterLayer> volumeMeters = new HashMap<>();
+    private static MeterLayer volumeMeter = null;
+
+    // Call animation looping on the frame clock, guarded by callLock
+    private static final long CALL_PAUSE_CHECK_MS = 100;
+    private static final Object callLock = new Object();
+    private static GlyphAnimation callTimeline = null;
+    private static int[] callFrame = null;
+    private static long callStartNanos = -1;
+
+    // Frame-by-frame animations take turns on a single thread instead of one thread each
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "GlyphAnimationThread"));
+
     private static Future<?> submit(Runnable runnable) {
-        ExecutorService executorService = Executors.newSingleThreadExecutor();
-        return executorService.submit(runnable);
+        return executor.submit(runnable);
     }
 
     private static boolean check(String name, boolean wait) {
@@ -84,243 +123,172 @@ public final class AnimationManager {
     }
 
     public static void playCsv(String name, boolean wait) {
+        // Would be dropped on the animation thread anyway, don't queue it behind the current one
+        if (!wait && (StatusManager.isAnimationActive() || StatusManager.isAllLedActive()
+                || StatusManager.isCallLedActive())) {
+            if (DEBUG) Log.d(TAG, "LEDs are busy, exiting animation | name: " + name);
+            return;
+        }
+
         submit(() -> {
             if (!check(name, wait))
                     return;
 
             StatusManager.setAnimationActive(true);
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    ResourceUtils.getAnimation(name)))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (checkInterruption("csv")) throw new InterruptedException();
-                    line = line.replace(" ", "");
-                    line = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
-                    String[] pattern = line.split(",");
-                    if (ArrayUtils.contains(Constants.getSupportedAnimationPatternLengths(), pattern.length)) {
-                        updateLedFrame(pattern);
-                    } else {
-                        if (DEBUG) Log.d(TAG, "Animation line length mismatch | name: " + name + " | line: " + line);
-                        throw new InterruptedException();
-                    }
-                    Thread.sleep(16, 666000);
-                }
+            try {
+                // CSVs are decoded on the animation thread, never on the caller's
+                GlyphAnimation frames = AnimationTimeline.get(name);
+                if (frames == null) throw new InterruptedException();
+                playFrames(frames, "csv");
             } catch (Exception e) {
                 if (DEBUG) Log.d(TAG, "Exception while playing animation | name: " + name + " | exception: " + e);
             } finally {
-                updateLedFrame(new float[5]);
+                updateLedFrame(blankFrame);
                 StatusManager.setAnimationActive(false);
                 if (DEBUG) Log.d(TAG, "Done playing animation | name: " + name);
             }
         });
     }
 
-    public static void playCharging(int batteryLevel, boolean wait) {
-        if (!check("charging", wait))
-            return;
+    public static void playCharging(int batteryLevel) {
+        batteryMeter.setLevel(batteryLevel);
+    }
 
-        StatusManager.setAnimationActive(true);
-        StatusManager.setChargingAnimationActive(true);
-
-        int[] batteryArray = StatusManager.getBatteryArray();
-        int amount = (int) Math.floor((batteryLevel / 100D) * batteryArray.length);
-        int last = StatusManager.getChargingLedLast();
-        int next = amount - 1;
-
-        try {
-            if (last <= next) {
-                for (int i = last; i <= next; i++) {
-                    if (checkInterruption("charging")) throw new InterruptedException();
-                    StatusManager.setChargingLedLast(i);
-                    batteryArray[i] = Constants.MAX_PATTERN_BRIGHTNESS;
-                    updateLedFrame(batteryArray);
-                    Thread.sleep(22);
-                }
-            } else if (last > next) {
-                for (int i = last; i > next; i--) {
-                    if (checkInterruption("charging")) throw new InterruptedException();
-                    StatusManager.setChargingLedLast(i);
-                    batteryArray[i] = 0;
-                    updateLedFrame(batteryArray);
-                    Thread.sleep(22);
-                }
-            }
-        } catch (InterruptedException e) {
-            if (DEBUG) Log.d(TAG, "Exception while playing animation, interrupted | name: charging");
-            if (!StatusManager.isAllLedActive()) {
-                StatusManager.setChargingLedLast(0);
-                batteryArray = new int[ResourceUtils.getInteger("glyph_settings_battery_levels_num")];
-                updateLedFrame(batteryArray);
-            }
-        } finally {
-            StatusManager.setAnimationActive(false);
-            StatusManager.setBatteryArray(batteryArray);
-            if (DEBUG) Log.d(TAG, "Done playing animation | name: charging");
-        }
+    // onDone runs on the frame thread once the burst is over or interrupted
+    public static void playChargingRate(int batteryLevel, long pulsePeriodNanos, int pulses,
+            Runnable onDone) {
+        batteryMeter.setLevel(batteryLevel);
+        batteryMeter.pulse(pulsePeriodNanos, pulses, onDone);
     }
 
     public static void dismissCharging() {
-        int[] emptyArray = new int[ResourceUtils.getInteger("glyph_settings_battery_levels_num")];
-        int[] batteryArray = StatusManager.getBatteryArray();
-
-        if (Arrays.equals(emptyArray, batteryArray))
-            return;
+        batteryMeter.dismiss();
+    }
 
-        if (!check("Dismiss charging", false))
-            return;
+    public static synchronized void playVolume(String stream, int volumeLevel) {
+        MeterLayer meter = getVolumeMeter(stream);
+        if (volumeMeter != null && volumeMeter != meter) volumeMeter.cancel();
+        volumeMeter = meter;
+        meter.setLevel(volumeLevel);
+    }
 
-        StatusManager.setAnimationActive(true);
-
-        try {
-            if (checkInterruption("Dismiss charging")) throw new InterruptedException();
-            for (int i = batteryArray.length - 1; i >= 0; i--) {
-                if (checkInterruption("Dismiss charging")) throw new InterruptedException();
-                if (batteryArray[i] != 0) {
-                    StatusManager.setChargingLedLast(i);
-                    batteryArray[i] = 0;
-                    updateLedFrame(batteryArray);
-                    Thread.sleep(22);
-                }
-            }
-        } catch (InterruptedException e) {
-            if (DEBUG) Log.d(TAG, "Exception while playing animation, interrupted | name: Dismiss charging");
-            if (!StatusManager.isAllLedActive())
-                updateLedFrame(new int[batteryArray.length]);
-        } finally {
-            StatusManager.setChargingLedLast(0);
-            StatusManager.setChargingAnimationActive(false);
-            StatusManager.setAnimationActive(false);
-            if (DEBUG) Log.d(TAG, "Done playing animation | name: Dismiss charging");
-        }
+    public static synchronized void dismissVolume() {
+        if (volumeMeter != null) volumeMeter.dismiss();
     }
 
-    public static void playVolume(int volumeLevel, boolean wait) {
-        if (!check("volume", wait))
-            return;
+    private static synchronized boolean isVolumeActive() {
+        return volumeMeter != null && volumeMeter.isActive();
+    }
 
-        StatusManager.setAnimationActive(true);
-        StatusManager.setVolumeAnimationActive(true);
-
-        int[] volumeArray = StatusManager.getVolumeArray();
-        int amount = (int) Math.round((volumeLevel / 100D) * volumeArray.length);
-        int last = StatusManager.getVolumeLedLast();
-        int next = amount - 1;
-
-        try {
-            if (last <= next) {
-                for (int i = last; i <= next; i++) {
-                    if (checkInterruption("volume")) throw new InterruptedException();
-                    StatusManager.setVolumeLedLast(i);
-                    volumeArray[i] = Constants.MAX_PATTERN_BRIGHTNESS;
-                    updateLedFrame(volumeArray);
-                    Thread.sleep(22);
-                }
-            } else if (last > next) {
-                for (int i = last; i > next; i--) {
-                    if (checkInterruption("volume")) throw new InterruptedException();
-                    StatusManager.setVolumeLedLast(i);
-                    volumeArray[i] = 0;
-                    updateLedFrame(volumeArray);
-                    Thread.sleep(22);
-                }
-            }
-        } catch (InterruptedException e) {
-            if (DEBUG) Log.d(TAG, "Exception while playing animation, interrupted | name: volume");
-            if (!StatusManager.isAllLedActive()) {
-                StatusManager.setVolumeLedLast(0);
-                volumeArray = new int[ResourceUtils.getInteger("glyph_settings_volume_levels_num")];
-                updateLedFrame(volumeArray);
-            }
-        } finally {
-            StatusManager.setAnimationActive(false);
-            StatusManager.setVolumeArray(volumeArray);
-            if (DEBUG) Log.d(TAG, "Done playing animation | name: volume");
-        }
+    private static MeterLayer getVolumeMeter(String stream) {
+        MeterLayer meter = volumeMeters.get(stream);
+        if (meter != null) return meter;
+
+        String[] streams = ResourceUtils.getStringArray("glyph_settings_volume_streams");
+        int[] brightness = ResourceUtils.getIntArray("glyph_settings_volume_streams_brightness");
+        int index = Arrays.asList(streams).indexOf(stream);
+        int meterBrightness = index >= 0 && index < brightness.length ? brightness[index] : 100;
+        meter = new MeterLayer(device, GlyphDevice.METER_VOLUME + stream, meterBrightness, true);
+        volumeMeters.put(stream, meter);
+        return meter;
     }
 
-    public static void dismissVolume() {
-        int[] emptyArray = new int[ResourceUtils.getInteger("glyph_settings_volume_levels_num")];
-        int[] volumeArray = StatusManager.getVolumeArray();
+    public static void playCall(String name) {
+        StatusManager.setCallLedEnabled(true);
 
-        if (Arrays.equals(emptyArray, volumeArray))
-            return;
+        // Loops until the call is over, never block the caller with it
+        submit(() -> {
+            // The call may have ended while queued
+            if (!StatusManager.isCallLedEnabled() || !check("call: " + name, true))
+                return;
 
-        if (!check("Dismiss volume", false))
-            return;
+            StatusManager.setCallLedActive(true);
 
-        StatusManager.setAnimationActive(true);
-
-        try {
-            if (checkInterruption("Dismiss volume")) throw new InterruptedException();
-            for (int i = volumeArray.length - 1; i >= 0; i--) {
-                if (volumeArray[i] != 0) {
-                    if (checkInterruption("Dismiss volume")) throw new InterruptedException();
-                    StatusManager.setVolumeLedLast(i);
-                    volumeArray[i] = 0;
-                    updateLedFrame(volumeArray);
-                    Thread.sleep(22);
-                }
+            // Decoded once, every loop replays the same frames
+            AnimationTimeline timeline = AnimationTimeline.getCall(name);
+            if (timeline == null || !device.isPatternLengthSupported(timeline.getFrameLength())) {
+                if (DEBUG) Log.d(TAG, "Call animation can't be played | name: " + name);
+                StatusManager.setCallLedActive(false);
+                return;
             }
-        } catch (InterruptedException e) {
-            if (DEBUG) Log.d(TAG, "Exception while playing animation, interrupted | name: Dismiss volume");
-            if (!StatusManager.isAllLedActive())
-                updateLedFrame(new int[volumeArray.length]);
-        } finally {
-            StatusManager.setVolumeLedLast(0);
-            StatusManager.setVolumeAnimationActive(false);
-            StatusManager.setAnimationActive(false);
-            if (DEBUG) Log.d(TAG, "Done playing animation | name: Dismiss volume");
-        }
-    }
-
-    public static void playCall(String name) {
-        StatusManager.setCallLedEnabled(true);
 
-        if (!check("call: " + name, true))
-            return;
+            // Loops on the frame clock for the whole call, the animation thread is free again
+            synchronized (callLock) {
+                callTimeline = timeline;
+                callFrame = new int[timeline.getFrameLength()];
+                callStartNanos = -1;
+            }
+            FrameManager.postFrameCallback(callCallback);
+        });
+    }
 
-        StatusManager.setCallLedActive(true);
-
-        while (StatusManager.isCallLedEnabled()) {
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                    ResourceUtils.getCallAnimation(name)))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (checkInterruption("call")) throw new InterruptedException();
-                    line = line.replace(" ", "");
-                    line = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
-                    String[] pattern = line.split(",");
-                    if (ArrayUtils.contains(Constants.getSupportedAnimationPatternLengths(), pattern.length)) {
-                        updateLedFrame(pattern);
-                    } else {
-                        if (DEBUG) Log.d(TAG, "Animation line length mismatch | name: " + name + " | line: " + line);
-                        throw new InterruptedException();
-                    }
-                    Thread.sleep(16, 666000);
+    private static final FrameManager.FrameCallback callCallback = new FrameManager.FrameCallback() {
+        @Override
+        public boolean doFrame(long frameTimeNanos) {
+            // Checked and written under the lock, stopCall() can't clear the LEDs in between
+            synchronized (callLock) {
+                if (callTimeline == null) return false;
+                if (!StatusManager.isCallLedEnabled()) {
+                    callTimeline = null;
+                    return false;
                 }
-            } catch (Exception e) {
-                if (DEBUG) Log.d(TAG, "Exception while playing animation | name: " + name + " | exception: " + e);
-            } finally {
                 if (StatusManager.isAllLedActive()) {
-                    if (DEBUG) Log.d(TAG, "All LED active, pause playing animation | name: " + name);
-                    while (StatusManager.isAllLedActive()) {}
+                    // The torch owns the LEDs, look again later and start the loop over
+                    if (DEBUG) Log.d(TAG, "All LED active, pause playing animation | name: call");
+                    callStartNanos = -1;
+                    FrameManager.getHandler().postDelayed(resumeCall, CALL_PAUSE_CHECK_MS);
+                    return false;
                 }
+
+                if (callStartNanos == -1) callStartNanos = frameTimeNanos;
+                long frame = (frameTimeNanos - callStartNanos) / AnimationTimeline.FRAME_INTERVAL_NANOS;
+                callTimeline.copyFrame((int) (frame % callTimeline.getFrameCount()), callFrame);
+                updateLedFrame(callFrame);
+                return true;
             }
         }
+    };
+
+    private static final Runnable resumeCall = new Runnable() {
+        @Override
+        public void run() {
+            FrameManager.postFrameCallback(callCallback);
+        }
+    };
+
+    private static void playFrames(GlyphAnimation animation, String name)
+            throws InterruptedException {
+        int length = animation.getFrameLength();
+        if (!device.isPatternLengthSupported(length)) {
+            if (DEBUG) Log.d(TAG, "Animation length not supported | name: " + animation.getName()
+                    + " | zones: " + length);
+            throw new InterruptedException();
+        }
+        int[] frame = length == playbackFrame.length ? playbackFrame : new int[length];
+        for (int i = 0; i < animation.getFrameCount(); i++) {
+            if (checkInterruption(name)) throw new InterruptedException();
+            animation.copyFrame(i, frame);
+            updateLedFrame(frame);
+            Thread.sleep(16, 666000);
+        }
     }
 
     public static void stopCall() {
         if (DEBUG) Log.d(TAG, "Disabling Call Animation");
-        StatusManager.setCallLedEnabled(false);
-        updateLedFrame(new float[5]);
+        synchronized (callLock) {
+            StatusManager.setCallLedEnabled(false);
+            callTimeline = null;
+            updateLedFrame(blankFrame);
+        }
+        FrameManager.getHandler().removeCallbacks(resumeCall);
         StatusManager.setCallLedActive(false);
         if (DEBUG) Log.d(TAG, "Done playing Call Animation");
     }
 
     public static void playEssential() {
         if (DEBUG) Log.d(TAG, "Playing Essential Animation");
-        int led = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
+        int led = device.getEssentialLed();
         if (!StatusManager.isEssentialLedActive()) {
             submit(() -> {
                 if (!check("essential", true))
@@ -330,10 +298,10 @@ public final class AnimationManager {
 
                 try {
                     if (checkInterruption("essential")) throw new InterruptedException();
-                    int[] steps = {12, 24, 36, 48, 60};
-                    for (int i : steps) {
+                    for (int i = 0; i < essentialRamp.getFrameCount(); i++) {
                         if (checkInterruption("essential")) throw new InterruptedException();
-                        updateLedSingle(led, Constants.MAX_PATTERN_BRIGHTNESS / 100 * i);
+                        essentialRamp.copyFrame(i, essentialFrame);
+                        updateLedSingle(led, essentialFrame[0]);
                         Thread.sleep(16, 666000);
                     }
                 } catch (InterruptedException e) {}
@@ -351,111 +319,90 @@ public final class AnimationManager {
         if (DEBUG) Log.d(TAG, "Disabling Essential Animation");
         StatusManager.setEssentialLedActive(false);
         if (!StatusManager.isAnimationActive() && !StatusManager.isAllLedActive()) {
-            int led = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
-            updateLedSingle(led, 0);
+            updateLedSingle(device.getEssentialLed(), 0);
         }
     }
 
     public static void playMusic(String name) {
-        if (StatusManager.isAnimationActive() || StatusManager.isChargingAnimationActive() 
-            || StatusManager.isVolumeAnimationActive() || StatusManager.isCallLedEnabled())
+        if (StatusManager.isAnimationActive() || batteryMeter.isActive()
+            || isVolumeActive() || StatusManager.isCallLedEnabled())
             return;
 
-        float maxPatternBrightness = (float) Constants.MAX_PATTERN_BRIGHTNESS;
-        float[] pattern = new float[5];
-
-        switch (name) {
-            case "low":
-                pattern[4] = maxPatternBrightness;
-                break;
-            case "mid_low":
-                pattern[3] = maxPatternBrightness;
-                break;
-            case "mid":
-                pattern[2] = maxPatternBrightness;
-                break;
-            case "mid_high":
-                pattern[0] = maxPatternBrightness;
-                break;
-            case "high":
-                pattern[1] = maxPatternBrightness;
-                break;
-            default:
-                if (DEBUG) Log.d(TAG, "Name doesn't match any zone, returning | name: " + name);
-                return;
+        int band = Arrays.asList(MUSIC_BANDS).indexOf(name);
+        int[] zones = device.getMusicZones();
+        if (band < 0 || band >= zones.length) {
+            if (DEBUG) Log.d(TAG, "Name doesn't match any zone, returning | name: " + name);
+            return;
         }
 
-        try {
-            updateLedFrame(pattern);
-            Thread.sleep(106);
-        } catch (Exception e) {
-            if (DEBUG) Log.d(TAG, "Exception while playing animation | name: music: " + name + " | exception: " + e);
-        } finally {
-            updateLedFrame(new float[5]);
-            if (DEBUG) Log.d(TAG, "Done playing animation | name: " + name);
-        }
+        // The visualizer callback must not sleep, clear the zone from the render thread
+        Handler handler = FrameManager.getHandler();
+        handler.removeCallbacks(clearMusic);
+        Arrays.fill(musicFrame, 0);
+        musicFrame[zones[band]] = Constants.MAX_PATTERN_BRIGHTNESS;
+        updateLedFrame(musicFrame);
+        handler.postDelayed(clearMusic, 106);
     }
 
-    private static void updateLedFrame(String[] pattern) {
-        updateLedFrame(Arrays.stream(pattern)
-                .mapToInt(Integer::parseInt)
-                .toArray());
-    }
+    private static final Runnable clearMusic = new Runnable() {
+        @Override
+        public void run() {
+            if (StatusManager.isAnimationActive() || batteryMeter.isActive()
+                    || isVolumeActive() || StatusManager.isCallLedEnabled())
+                return;
+            updateLedFrame(blankMusicFrame);
+            if (DEBUG) Log.d(TAG, "Done playing animation | name: music");
+        }
+    };
 
     private static void updateLedFrame(int[] pattern) {
-        float[] floatPattern = new float[pattern.length];
-        for (int i = 0; i < pattern.length; i++) {
-            floatPattern[i] = (float) pattern[i];
+        //if (DEBUG) Log.d(TAG, "Updating pattern: " + pattern);
+        synchronized (frameLock) {
+            int[] frame = getFrameBuffer(pattern.length);
+            System.arraycopy(pattern, 0, frame, 0, pattern.length);
+            writeFrame(frame);
         }
-        updateLedFrame(floatPattern);
     }
 
-    private static void updateLedFrame(float[] pattern) {
-        //if (DEBUG) Log.d(TAG, "Updating pattern: " + pattern);
-        float maxPatternBrightness = (float) Constants.MAX_PATTERN_BRIGHTNESS;
-        float currentBrightness = (float) Constants.getBrightness();
-        int essentialLed = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
-
-        if (StatusManager.isEssentialLedActive()) {
-            if (pattern.length == 5) { // Phone (1) pattern
-                if (pattern[1] < (maxPatternBrightness / 100 * 60)) {
-                    pattern[1] = maxPatternBrightness / 100 * 60;
-                }
-            } else if (pattern.length == 33) { // Phone (2) pattern
-                if (pattern[2] < (maxPatternBrightness / 100 * 60)) {
-                    pattern[2] = maxPatternBrightness / 100 * 60;
-                }
-            }
+    private static int[] getFrameBuffer(int length) {
+        int[] frame = frameBuffers.get(length);
+        if (frame == null) {
+            frame = new int[length];
+            frameBuffers.put(length, frame);
         }
+        return frame;
+    }
 
-        for (int i = 0; i < pattern.length; i++) {
-            pattern[i] = pattern[i] / maxPatternBrightness * currentBrightness;
+    private static void writeFrame(int[] frame) {
+        int essentialBrightness = Constants.MAX_PATTERN_BRIGHTNESS * 60 / 100;
+        int essentialZone = device.getEssentialZone(frame.length);
+
+        if (StatusManager.isEssentialLedActive()
+                && essentialZone != -1
+                && frame[essentialZone] < essentialBrightness) {
+            frame[essentialZone] = essentialBrightness;
         }
-        FileUtils.writeFrameLed(pattern);
-    }
 
-    private static void updateLedSingle(int led, String brightness) {
-        updateLedSingle(led, Float.parseFloat(brightness));
+        BrightnessManager.scaleFrame(frame);
+        FileUtils.writeFrameLed(frame);
     }
 
-    private static void updateLedSingle(int led, int brightness) {
-        updateLedSingle(led, (float) brightness);
+    // Used by layers drawing on the frame clock, they already checked who owns the LEDs
+    static void writeLayerFrame(int[] frame) {
+        updateLedFrame(frame);
     }
 
-    private static void updateLedSingle(int led, float brightness) {
+    private static void updateLedSingle(int led, int brightness) {
         //if (DEBUG) Log.d(TAG, "Updating led | led: " + led + " | brightness: " + brightness);
-        float maxPatternBrightness = (float) Constants.MAX_PATTERN_BRIGHTNESS;
-        float currentBrightness = (float) Constants.getBrightness();
-        int essentialLed = ResourceUtils.getInteger("glyph_settings_notifs_essential_led");
+        int essentialBrightness = Constants.MAX_PATTERN_BRIGHTNESS * 60 / 100;
+        int essentialLed = device.getEssentialLed();
 
         if (StatusManager.isEssentialLedActive()
                 && led == essentialLed
-                && brightness < (maxPatternBrightness / 100 * 60)) {
-            brightness = maxPatternBrightness / 100 * 60;
+                && brightness < essentialBrightness) {
+            brightness = essentialBrightness;
         }
 
-        brightness = brightness / maxPatternBrightness * currentBrightness;
-
-        FileUtils.writeSingleLed(led, brightness);
+        FileUtils.writeSingleLed(led, BrightnessManager.scale(device.getLedZone(led), brightness));
     }
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Manager;
+
+import android.util.Log;
+
+import java.util.HashMap;
+
+import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.DeviceProfile;
+import co.aospa.glyph.Constants.GlyphDevice;
+
+public final class BrightnessManager {
+
+    private static final String TAG = "GlyphBrightnessManager";
+    private static final boolean DEBUG = true;
+
+    // Gamma and zone gains are stored as percentages, 100 means no correction
+    private static final int GAMMA_LINEAR = 100;
+    private static final int GAIN_UNITY = 100;
+
+    private static final long RAMP_DURATION_NANOS = 400_000_000L;
+
+    // Brightness is applied as a 16.16 fixed point factor on top of the tables
+    private static final int FACTOR_SHIFT = 16;
+
+    private static volatile Lut lut = null;
+
+    private static int rampFrom = -1;
+    private static int rampTarget = -1;
+    private static long rampStartNanos = -1;
+
+    // Maps a pattern value (0 - MAX_PATTERN_BRIGHTNESS) to a corrected pattern value with
+    // gamma and the zone gain applied. Calibration comes from the device profile and never
+    // changes, the tables are built once and brightness is one multiply per value, so a
+    // brightness ramp costs nothing extra per frame.
+    private static final class Lut {
+        // Table of every zone, indexed by frame length, null for lengths without gains
+        private final int[][][] lengths;
+        private final int[] unity;
+
+        private Lut(int[][][] lengths, int[] unity) {
+            this.lengths = lengths;
+            this.unity = unity;
+        }
+    }
+
+    public static synchronized void rampTo(int target) {
+        if (target == rampTarget || (rampTarget == -1 && target == Constants.getBrightness()))
+            return;
+        if (DEBUG) Log.d(TAG, "Ramping brightness | from: " + Constants.getBrightness() + " | to: " + target);
+        rampFrom = Constants.getBrightness();
+        rampTarget = target;
+        rampStartNanos = -1;
+        FrameManager.postFrameCallback(rampCallback);
+    }
+
+    private static final FrameManager.FrameCallback rampCallback = new FrameManager.FrameCallback() {
+        @Override
+        public boolean doFrame(long frameTimeNanos) {
+            int from, target;
+            long elapsed;
+            synchronized (BrightnessManager.class) {
+                if (rampTarget == -1) return false;
+                if (rampStartNanos == -1) rampStartNanos = frameTimeNanos;
+                from = rampFrom;
+                target = rampTarget;
+                elapsed = frameTimeNanos - rampStartNanos;
+            }
+
+            int brightness = elapsed >= RAMP_DURATION_NANOS ? target
+                    : from + (int) ((target - from) * elapsed / RAMP_DURATION_NANOS);
+            if (brightness != Constants.getBrightness()) {
+                Constants.setBrightness(brightness);
+                if (StatusManager.isEssentialLedActive() && !StatusManager.isAnimationActive()
+                        && !StatusManager.isAllLedActive())
+                    AnimationManager.playEssential();
+            }
+
+            if (brightness != target) return true;
+            synchronized (BrightnessManager.class) {
+                // A new ramp might have been requested while this frame was running
+                if (rampTarget != target) return true;
+                rampTarget = -1;
+            }
+            return false;
+        }
+    };
+
+    // Single LED writes, zone is in full frame zone space, -1 when the LED has none
+    public static int scale(int zone, int value) {
+        Lut current = getLut();
+        return lookup(current, getTables(current, DeviceProfile.get().getFrameLength()), zone, value,
+                getFactor(), Constants.getMaxBrightness());
+    }
+
+    public static void scaleFrame(int[] frame) {
+        Lut current = getLut();
+        int[][] tables = getTables(current, frame.length);
+        long factor = getFactor();
+        int maxBrightness = Constants.getMaxBrightness();
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = lookup(current, tables, i, frame[i], factor, maxBrightness);
+        }
+    }
+
+    private static long getFactor() {
+        return ((long) Constants.getBrightness() << FACTOR_SHIFT) / Constants.MAX_PATTERN_BRIGHTNESS;
+    }
+
+    private static int[][] getTables(Lut current, int length) {
+        return length < current.lengths.length ? current.lengths[length] : null;
+    }
+
+    private static int lookup(Lut current, int[][] tables, int zone, int value, long factor,
+            int maxBrightness) {
+        int[] table = tables != null && zone >= 0 && zone < tables.length ? tables[zone] : current.unity;
+        int corrected = table[Math.max(0, Math.min(value, Constants.MAX_PATTERN_BRIGHTNESS))];
+        long scaled = (corrected * factor + (1 << (FACTOR_SHIFT - 1))) >> FACTOR_SHIFT;
+        return (int) Math.min(scaled, maxBrightness);
+    }
+
+    private static Lut getLut() {
+        Lut current = lut;
+        return current != null ? current : build();
+    }
+
+    private static synchronized Lut build() {
+        Lut current = lut;
+        if (current != null) return current;
+
+        GlyphDevice device = DeviceProfile.get();
+        int gamma = device.getBrightnessGamma();
+        int[] zoneGains = device.getBrightnessZoneGains();
+        if (DEBUG) Log.d(TAG, "Building lookup tables | gamma: " + gamma + " | zones: " + zoneGains.length);
+
+        // Gains are per zone of the full frame. A zone of a shorter pattern gets the
+        // average gain of the full frame zones it is drawn on, frames of any other
+        // length (meter bars) stay uncorrected.
+        if (zoneGains.length > device.getFrameLength())
+            Log.w(TAG, "More zone gains than zones | gains: " + zoneGains.length
+                    + " | zones: " + device.getFrameLength());
+        int[] unity = buildTable(gamma, GAIN_UNITY);
+        int[][][] lengths = new int[device.getFrameLength() + 1][][];
+        if (zoneGains.length > 0) {
+            // Zones usually share the same gain, build one table per distinct value
+            HashMap<Integer, int[]> tables = new HashMap<>();
+            tables.put(GAIN_UNITY, unity);
+            for (int length : device.getPatternLengths()) {
+                int[] map = device.getZoneMap(length);
+                if (map == null) continue;
+                int[] sums = new int[length];
+                int[] counts = new int[length];
+                for (int zone = 0; zone < map.length; zone++) {
+                    sums[map[zone]] += zone < zoneGains.length ? zoneGains[zone] : GAIN_UNITY;
+                    counts[map[zone]]++;
+                }
+                lengths[length] = new int[length][];
+                for (int zone = 0; zone < length; zone++) {
+                    int gain = counts[zone] > 0 ? Math.round(sums[zone] / (float) counts[zone]) : GAIN_UNITY;
+                    int[] table = tables.get(gain);
+                    if (table == null) {
+                        table = buildTable(gamma, gain);
+                        tables.put(gain, table);
+                    }
+                    lengths[length][zone] = table;
+                }
+            }
+        }
+
+        current = new Lut(lengths, unity);
+        lut = current;
+        return current;
+    }
+
+    // Pattern values in, pattern values out, a gain above unity may go past the maximum
+    // and is capped only once brightness is applied
+    private static int[] buildTable(int gamma, int gain) {
+        double maxPatternBrightness = (double) Constants.MAX_PATTERN_BRIGHTNESS;
+        double exponent = gamma / (double) GAMMA_LINEAR;
+        double scale = maxPatternBrightness * (gain / (double) GAIN_UNITY);
+
+        int[] table = new int[Constants.MAX_PATTERN_BRIGHTNESS + 1];
+        for (int i = 0; i < table.length; i++) {
+            double value = i / maxPatternBrightness;
+            if (gamma != GAMMA_LINEAR) value = Math.pow(value, exponent);
+            table[i] = (int) Math.round(value * scale);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Manager;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+public final class FrameManager {
+
+    private static final String TAG = "GlyphFrameManager";
+    private static final boolean DEBUG = true;
+
+    public static final long FRAME_INTERVAL_NANOS = 16_666_667L;
+
+    public interface FrameCallback {
+        // Return true to be called again on the next frame
+        boolean doFrame(long frameTimeNanos);
+    }
+
+    private static HandlerThread thread;
+    private static Handler handler;
+
+    private static final ArrayList<FrameCallback> callbacks = new ArrayList<>();
+    private static FrameCallback[] running = new FrameCallback[4];
+    private static boolean frameScheduled = false;
+    private static long nextFrameNanos = 0;
+
+    private static final Runnable frame = new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    };
+
+    public static synchronized Handler getHandler() {
+        if (handler == null) {
+            if (DEBUG) Log.d(TAG, "Starting render thread");
+            thread = new HandlerThread("GlyphRenderThread");
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    public static synchronized void postFrameCallback(FrameCallback callback) {
+        if (!callbacks.contains(callback)) callbacks.add(callback);
+        scheduleFrame();
+    }
+
+    public static synchronized void removeFrameCallback(FrameCallback callback) {
+        callbacks.remove(callback);
+    }
+
+    private static void scheduleFrame() {
+        if (frameScheduled) return;
+        frameScheduled = true;
+        // Keep a steady cadence while frames are requested back to back
+        long now = System.nanoTime();
+        if (nextFrameNanos < now) nextFrameNanos = now;
+        getHandler().postAtTime(frame, nextFrameNanos / 1_000_000L);
+    }
+
+    private static void doFrame() {
+        int count;
+        long frameTimeNanos = System.nanoTime();
+        synchronized (FrameManager.class) {
+            frameScheduled = false;
+            nextFrameNanos = frameTimeNanos + FRAME_INTERVAL_NANOS;
+            count = callbacks.size();
+            if (running.length < count) running = new FrameCallback[count];
+            callbacks.toArray(running);
+        }
+
+        for (int i = 0; i < count; i++) {
+            FrameCallback callback = running[i];
+            running[i] = null;
+            if (!callback.doFrame(frameTimeNanos)) {
+                removeFrameCallback(callback);
+            }
+        }
+
+        synchronized (FrameManager.class) {
+            if (!callbacks.isEmpty()) scheduleFrame();
+        }
+    }
+}
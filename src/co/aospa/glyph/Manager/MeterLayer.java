@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Manager;
+
+import android.util.Log;
+
+import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.GlyphDevice;
+import co.aospa.glyph.Utils.ProceduralAnimation;
+
+// A level meter (battery, volume) drawn as a bar of LEDs. Callers only set the
+// target level, the bar moves towards it on the frame clock and the LED at the
+// head of the bar is partially lit while it moves.
+public final class MeterLayer {
+
+    private static final String TAG = "GlyphMeterLayer";
+    private static final boolean DEBUG = true;
+
+    // How long the bar takes to move by one LED
+    private static final long STEP_DURATION_NANOS = 22_000_000L;
+
+    private final String mName;
+    private final boolean mRound;
+    // Zones of the frame the bar is drawn on, lowest level first
+    private final int[] mZones;
+    private final int mLevels;
+    private final int mMaxBrightness;
+
+    private final int[] mFrame;
+    private final int[] mLastFrame;
+    private final int[] mBlankFrame;
+    private final int[] mPulseFrame;
+
+    private float mPosition = 0;
+    private float mTarget = 0;
+    private boolean mActive = false;
+    private boolean mDismissing = false;
+    private long mLastFrameNanos = -1;
+
+    private long mPulsePeriodNanos = 0;
+    private int mPulseCount = 0;
+    private long mPulseStartNanos = -1;
+    // Built once the bar reached its target, the head LED is known from then on
+    private ProceduralAnimation mPulse = null;
+    private Runnable mOnDone = null;
+
+    // Brightness in percent of the maximum pattern brightness
+    public MeterLayer(GlyphDevice device, String meter, int brightness, boolean round) {
+        mName = meter;
+        mRound = round;
+        mZones = device.getMeterZones(meter);
+        mLevels = mZones.length;
+        mMaxBrightness = Constants.MAX_PATTERN_BRIGHTNESS * brightness / 100;
+        // Sized once, every frame of this meter is drawn into the same buffers
+        mFrame = new int[device.getMeterFrameLength(meter)];
+        mLastFrame = new int[mFrame.length];
+        mBlankFrame = new int[mFrame.length];
+        mPulseFrame = new int[mFrame.length];
+    }
+
+    public synchronized boolean isActive() {
+        return mActive;
+    }
+
+    // Level in percent, the bar length is rounded to whole LEDs
+    public synchronized void setLevel(int level) {
+        double amount = (level / 100D) * mLevels;
+        float target = (float) (mRound ? Math.round(amount) : Math.floor(amount));
+        if (DEBUG) Log.d(TAG, "Setting level | name: " + mName + " | level: " + level
+                + " | leds: " + target);
+        mTarget = Math.max(0, Math.min(target, mLevels));
+        mDismissing = false;
+        start();
+    }
+
+    // Pulses the LED right after the bar once it reached its target, then dismisses.
+    // onDone runs once the meter stops, a later pulse replaces it.
+    public synchronized void pulse(long periodNanos, int count, Runnable onDone) {
+        if (DEBUG) Log.d(TAG, "Pulsing | name: " + mName + " | period: "
+                + periodNanos / 1_000_000L + "ms | count: " + count);
+        mPulsePeriodNanos = periodNanos;
+        mPulseCount = count;
+        mPulseStartNanos = -1;
+        mPulse = null;
+        mOnDone = onDone;
+        start();
+    }
+
+    public synchronized void dismiss() {
+        if (!mActive) return;
+        if (DEBUG) Log.d(TAG, "Dismissing | name: " + mName);
+        mPulseCount = 0;
+        mPulse = null;
+        mTarget = 0;
+        mDismissing = true;
+        start();
+    }
+
+    // Stops right away without clearing, another layer is about to draw over it
+    public synchronized void cancel() {
+        if (!mActive) return;
+        if (DEBUG) Log.d(TAG, "Cancelling | name: " + mName);
+        stop(false);
+    }
+
+    private void start() {
+        if (!mActive) {
+            mActive = true;
+            mLastFrameNanos = -1;
+            // Nothing has been drawn yet, make sure the first frame is written
+            mLastFrame[0] = -1;
+        }
+        FrameManager.postFrameCallback(mFrameCallback);
+    }
+
+    private void stop(boolean clear) {
+        if (DEBUG) Log.d(TAG, "Done playing animation | name: " + mName);
+        mActive = false;
+        mDismissing = false;
+        mPulseCount = 0;
+        mPulse = null;
+        mPosition = 0;
+        mTarget = 0;
+        if (clear) AnimationManager.writeLayerFrame(mBlankFrame);
+        if (mOnDone != null) {
+            mOnDone.run();
+            mOnDone = null;
+        }
+    }
+
+    private final FrameManager.FrameCallback mFrameCallback = new FrameManager.FrameCallback() {
+        @Override
+        public boolean doFrame(long frameTimeNanos) {
+            synchronized (MeterLayer.this) {
+                if (!mActive) return false;
+
+                // All LEDs and calls own the LEDs, the meter is simply dropped. Nothing is
+                // cleared, a blank frame from here could land after the call's first frame
+                // and the call loop draws full frames anyway.
+                if (StatusManager.isAllLedActive() || StatusManager.isCallLedEnabled()) {
+                    if (DEBUG) Log.d(TAG, "Interrupted | name: " + mName);
+                    stop(false);
+                    return false;
+                }
+
+                long elapsed = mLastFrameNanos == -1 ? FrameManager.FRAME_INTERVAL_NANOS
+                        : frameTimeNanos - mLastFrameNanos;
+                mLastFrameNanos = frameTimeNanos;
+
+                float step = elapsed / (float) STEP_DURATION_NANOS;
+                if (mPosition < mTarget) {
+                    mPosition = Math.min(mPosition + step, mTarget);
+                } else if (mPosition > mTarget) {
+                    mPosition = Math.max(mPosition - step, mTarget);
+                }
+
+                boolean pulsing = mPulseCount > 0 && mPosition == mTarget;
+                long pulseElapsed = 0;
+                if (pulsing) {
+                    if (mPulse == null) {
+                        // The LED being charged breathes, the last one when the bar is full
+                        int head = mZones[Math.min((int) mTarget, mLevels - 1)];
+                        mPulse = ProceduralAnimation.breathe(mName, mFrame.length,
+                                new int[] { head }, mPulsePeriodNanos / 1_000_000L, mPulseCount,
+                                0, mMaxBrightness);
+                        mPulseStartNanos = frameTimeNanos;
+                    }
+                    pulseElapsed = frameTimeNanos - mPulseStartNanos;
+                    if (pulseElapsed >= mPulse.getDurationNanos()) {
+                        pulsing = false;
+                        mPulseCount = 0;
+                        mPulse = null;
+                        mTarget = 0;
+                        mDismissing = true;
+                    }
+                }
+
+                // Another animation is drawing, keep moving and draw again once it is done
+                if (StatusManager.isAnimationActive()) {
+                    mLastFrame[0] = -1;
+                    return true;
+                }
+
+                for (int i = 0; i < mLevels; i++) {
+                    float fill = Math.max(0, Math.min(mPosition - i, 1));
+                    mFrame[mZones[i]] = Math.round(fill * mMaxBrightness);
+                }
+                if (pulsing) {
+                    mPulse.copyFrameAt(pulseElapsed, mPulseFrame);
+                    int head = mZones[Math.min((int) mTarget, mLevels - 1)];
+                    mFrame[head] = mPulseFrame[head];
+                }
+                boolean changed = false;
+                for (int i = 0; i < mFrame.length; i++) {
+                    if (mFrame[i] != mLastFrame[i]) {
+                        changed = true;
+                        mLastFrame[i] = mFrame[i];
+                    }
+                }
+                if (changed) AnimationManager.writeLayerFrame(mFrame);
+
+                if (mPosition != mTarget || pulsing) return true;
+                if (mDismissing) {
+                    stop(false);
+                    return false;
+                }
+                // Idle at the target, nothing to draw until the level changes again
+                return false;
+            }
+        }
+    };
+}
@@ -17,17 +17,26 @@
 package co.aospa.glyph.Manager;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
 
 import androidx.preference.PreferenceManager;
 
-import com.android.internal.util.ArrayUtils;
-
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.DeviceProfile;
 import co.aospa.glyph.Utils.FileUtils;
 import co.aospa.glyph.Utils.ResourceUtils;
 
@@ -36,24 +45,209 @@ public final class SettingsManager {
     private static final String TAG = "GlyphSettingsManager";
     private static final boolean DEBUG = true;
 
-    private static Context context = Constants.CONTEXT;
+    private static Context getContext() {
+        return Constants.getContext();
+    }
+
+    // Everything below reads from a snapshot so readers never take a lock or do IPC.
+    // Preferences are updated in place one key at a time, the secure settings are
+    // immutable and replace the snapshot when they change.
+    private static final class Snapshot {
+        private final ConcurrentHashMap<String, Object> preferences;
+        private final boolean glyphEnabled;
+        private final boolean callEnabled;
+        private final boolean notifsEnabled;
+
+        private Snapshot(ConcurrentHashMap<String, Object> preferences, boolean glyphEnabled,
+                boolean callEnabled, boolean notifsEnabled) {
+            this.preferences = preferences;
+            this.glyphEnabled = glyphEnabled;
+            this.callEnabled = callEnabled;
+            this.notifsEnabled = notifsEnabled;
+        }
+
+        private boolean getBoolean(String key, boolean defValue) {
+            Object value = preferences.get(key);
+            return value instanceof Boolean ? (Boolean) value : defValue;
+        }
+
+        private int getInt(String key, int defValue) {
+            Object value = preferences.get(key);
+            return value instanceof Integer ? (Integer) value : defValue;
+        }
+
+        private String getString(String key, String defValue) {
+            Object value = preferences.get(key);
+            return value instanceof String ? (String) value : defValue;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Set<String> getStringSet(String key) {
+            Object value = preferences.get(key);
+            return value instanceof Set ? (Set<String>) value : Collections.emptySet();
+        }
+    }
+
+    private static volatile Snapshot snapshot = null;
+    private static int defaultBrightnessSetting = -1;
+
+    private static HandlerThread thread;
+    private static Handler handler;
+    private static ContentObserver secureObserver;
+
+    // Told on the main thread once the snapshot holds the new secure settings. A
+    // ContentObserver of its own could run before that and read the old values.
+    public interface SecureSettingsListener {
+        void onSecureSettingsChanged();
+    }
+
+    private static final CopyOnWriteArrayList<SecureSettingsListener> secureListeners =
+            new CopyOnWriteArrayList<>();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private static SharedPreferences getPreferences() {
+        return PreferenceManager.getDefaultSharedPreferences(getContext());
+    }
+
+    private static Snapshot get() {
+        Snapshot current = snapshot;
+        return current != null ? current : load();
+    }
+
+    private static synchronized Snapshot load() {
+        if (snapshot != null) return snapshot;
+        if (DEBUG) Log.d(TAG, "Loading settings");
+
+        thread = new HandlerThread("GlyphSettingsThread");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        secureObserver = new ContentObserver(handler) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                reloadSecure();
+            }
+        };
+
+        // SharedPreferences only keeps a weak reference to its listeners
+        getPreferences().registerOnSharedPreferenceChangeListener(preferenceListener);
+        for (String key : new String[] { Constants.GLYPH_ENABLE,
+                Constants.GLYPH_CALL_ENABLE, Constants.GLYPH_NOTIFS_ENABLE }) {
+            getContext().getContentResolver().registerContentObserver(
+                    Settings.Secure.getUriFor(key), false, secureObserver);
+        }
+
+        snapshot = new Snapshot(readPreferences(), readSecure(Constants.GLYPH_ENABLE),
+                readSecure(Constants.GLYPH_CALL_ENABLE), readSecure(Constants.GLYPH_NOTIFS_ENABLE));
+        return snapshot;
+    }
+
+    private static ConcurrentHashMap<String, Object> readPreferences() {
+        ConcurrentHashMap<String, Object> preferences = new ConcurrentHashMap<>();
+        for (Map.Entry<String, ?> entry : getPreferences().getAll().entrySet()) {
+            if (entry.getValue() != null) preferences.put(entry.getKey(), entry.getValue());
+        }
+        return preferences;
+    }
+
+    // Typed reads of a single key, getAll() would copy every preference. The type the
+    // key had before is tried first so a slider being dragged never throws.
+    private static Object readPreference(SharedPreferences preferences, String key, Object previous) {
+        if (!preferences.contains(key)) return null;
+        if (previous instanceof Integer) return preferences.getInt(key, 0);
+        if (previous instanceof String) return preferences.getString(key, null);
+        if (previous instanceof Set) return readStringSet(preferences, key);
+        try {
+            return preferences.getBoolean(key, false);
+        } catch (ClassCastException e) {}
+        try {
+            return preferences.getInt(key, 0);
+        } catch (ClassCastException e) {}
+        try {
+            return preferences.getString(key, null);
+        } catch (ClassCastException e) {}
+        try {
+            return readStringSet(preferences, key);
+        } catch (ClassCastException e) {}
+        return null;
+    }
+
+    // The returned set belongs to SharedPreferences, it must not be shared
+    private static Set<String> readStringSet(SharedPreferences preferences, String key) {
+        Set<String> value = preferences.getStringSet(key, null);
+        return value != null ? Collections.unmodifiableSet(new HashSet<>(value)) : null;
+    }
+
+    private static boolean readSecure(String key) {
+        return Settings.Secure.getInt(getContext().getContentResolver(), key, 1) != 0;
+    }
+
+    private static synchronized void reloadPreferences() {
+        Snapshot current = get();
+        snapshot = new Snapshot(readPreferences(), current.glyphEnabled,
+                current.callEnabled, current.notifsEnabled);
+    }
+
+    private static synchronized void reloadPreference(SharedPreferences preferences, String key) {
+        Map<String, Object> current = get().preferences;
+        Object value = readPreference(preferences, key, current.get(key));
+        if (value != null) {
+            current.put(key, value);
+        } else {
+            current.remove(key);
+        }
+    }
+
+    private static synchronized void reloadSecure() {
+        Snapshot current = get();
+        snapshot = new Snapshot(current.preferences, readSecure(Constants.GLYPH_ENABLE),
+                readSecure(Constants.GLYPH_CALL_ENABLE), readSecure(Constants.GLYPH_NOTIFS_ENABLE));
+        mainHandler.post(() -> {
+            for (SecureSettingsListener listener : secureListeners) {
+                listener.onSecureSettingsChanged();
+            }
+        });
+    }
+
+    public static void addSecureSettingsListener(SecureSettingsListener listener) {
+        // Changes are only observed once the snapshot exists
+        get();
+        secureListeners.addIfAbsent(listener);
+    }
+
+    public static void removeSecureSettingsListener(SecureSettingsListener listener) {
+        secureListeners.remove(listener);
+    }
+
+    // SharedPreferences calls this on the main thread, only the changed key is read back.
+    // A null key means the preferences were cleared.
+    private static final SharedPreferences.OnSharedPreferenceChangeListener preferenceListener =
+            new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences preferences, String key) {
+            if (key == null) {
+                reloadPreferences();
+            } else {
+                reloadPreference(preferences, key);
+            }
+        }
+    };
 
     public static boolean enableGlyph(boolean enable) {
-        PreferenceManager.getDefaultSharedPreferences(context).edit()
-                .putBoolean(Constants.GLYPH_ENABLE, enable).apply();
+        getPreferences().edit().putBoolean(Constants.GLYPH_ENABLE, enable).apply();
 
-        return Settings.Secure.putInt(context.getContentResolver(),
+        boolean result = Settings.Secure.putInt(getContext().getContentResolver(),
                 Constants.GLYPH_ENABLE, enable ? 1 : 0);
+        reloadSecure();
+        return result;
     }
 
     public static boolean isGlyphEnabled() {
-        return (Settings.Secure.getInt(context.getContentResolver(),Constants.GLYPH_ENABLE, 1) != 0 
-            || PreferenceManager.getDefaultSharedPreferences(context).getBoolean(Constants.GLYPH_ENABLE, false));
+        Snapshot current = get();
+        return current.glyphEnabled || current.getBoolean(Constants.GLYPH_ENABLE, false);
     }
 
     public static boolean isGlyphFlipEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_FLIP_ENABLE, false) && isGlyphEnabled();
+        return get().getBoolean(Constants.GLYPH_FLIP_ENABLE, false) && isGlyphEnabled();
     }
 
     public static int getGlyphBrightness() {
@@ -63,78 +257,76 @@ public final class SettingsManager {
     }
 
     public static int getGlyphBrightnessSetting() {
-        int d = 3; if (FileUtils.readLine("/mnt/vendor/persist/color") == "white") d = 2;
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getInt(Constants.GLYPH_BRIGHTNESS, d);
+        if (defaultBrightnessSetting == -1) {
+            defaultBrightnessSetting = "white".equals(FileUtils.readLine("/mnt/vendor/persist/color")) ? 2 : 3;
+        }
+        return get().getInt(Constants.GLYPH_BRIGHTNESS, defaultBrightnessSetting);
     }
 
     public static boolean isGlyphChargingEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_CHARGING_LEVEL_ENABLE, false) && isGlyphEnabled();
+        return get().getBoolean(Constants.GLYPH_CHARGING_LEVEL_ENABLE, false) && isGlyphEnabled();
+    }
+
+    public static boolean isGlyphChargingRateEnabled() {
+        return get().getBoolean(Constants.GLYPH_CHARGING_RATE_ENABLE, false) && isGlyphChargingEnabled();
     }
 
     public static boolean isGlyphPowershareEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_CHARGING_POWERSHARE_ENABLE, false) && isGlyphEnabled();
+        return get().getBoolean(Constants.GLYPH_CHARGING_POWERSHARE_ENABLE, false) && isGlyphEnabled();
     }
 
     public static boolean isGlyphCallEnabled() {
-        return Settings.Secure.getInt(context.getContentResolver(),
-                Constants.GLYPH_CALL_ENABLE, 1) != 0 && isGlyphEnabled();
+        return get().callEnabled && isGlyphEnabled();
     }
 
     public static boolean setGlyphCallEnabled(boolean enable) {
-        return Settings.Secure.putInt(context.getContentResolver(),
+        boolean result = Settings.Secure.putInt(getContext().getContentResolver(),
                 Constants.GLYPH_CALL_ENABLE, enable ? 1 : 0);
+        reloadSecure();
+        return result;
     }
 
     public static String getGlyphCallAnimation() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getString(Constants.GLYPH_CALL_SUB_ANIMATIONS,
-                        ResourceUtils.getString("glyph_settings_call_animations_default"));
+        return get().getString(Constants.GLYPH_CALL_SUB_ANIMATIONS,
+                ResourceUtils.getString("glyph_settings_call_animations_default"));
     }
 
     public static boolean isGlyphMusicVisualizerEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_MUSIC_VISUALIZER_ENABLE, false) && isGlyphEnabled();
+        return get().getBoolean(Constants.GLYPH_MUSIC_VISUALIZER_ENABLE, false) && isGlyphEnabled();
     }
 
     public static boolean isGlyphVolumeLevelEnabled() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(Constants.GLYPH_VOLUME_LEVEL_ENABLE, false) && isGlyphEnabled();
+        return get().getBoolean(Constants.GLYPH_VOLUME_LEVEL_ENABLE, false) && isGlyphEnabled();
     }
 
     public static boolean isGlyphNotifsEnabled() {
-        return Settings.Secure.getInt(context.getContentResolver(),
-                Constants.GLYPH_NOTIFS_ENABLE, 1) != 0 && isGlyphEnabled();
+        return get().notifsEnabled && isGlyphEnabled();
     }
 
     public static boolean setGlyphNotifsEnabled(boolean enable) {
-        return Settings.Secure.putInt(context.getContentResolver(),
+        boolean result = Settings.Secure.putInt(getContext().getContentResolver(),
                 Constants.GLYPH_NOTIFS_ENABLE, enable ? 1 : 0);
+        reloadSecure();
+        return result;
     }
 
     public static String getGlyphNotifsAnimation() {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getString(Constants.GLYPH_NOTIFS_SUB_ANIMATIONS,
-                        ResourceUtils.getString("glyph_settings_notifs_animations_default"));
+        return get().getString(Constants.GLYPH_NOTIFS_SUB_ANIMATIONS,
+                ResourceUtils.getString("glyph_settings_notifs_animations_default"));
     }
 
     public static boolean isGlyphNotifsAppEnabled(String app) {
-        return PreferenceManager.getDefaultSharedPreferences(context)
-                .getBoolean(app, true) && isGlyphNotifsEnabled();
+        return get().getBoolean(app, true) && isGlyphNotifsEnabled();
     }
 
     public static boolean isGlyphNotifsAppEssential(String app) {
-        Set<String> selectedValues = PreferenceManager.getDefaultSharedPreferences(context)
-                .getStringSet(Constants.GLYPH_NOTIFS_SUB_ESSENTIAL , new HashSet<String>());
-        return selectedValues.contains(app) && isGlyphNotifsEnabled();
+        return get().getStringSet(Constants.GLYPH_NOTIFS_SUB_ESSENTIAL).contains(app)
+                && isGlyphNotifsEnabled();
     }
 
     public static boolean isGlyphAutoBrightnessEnabled() {
-        return !ResourceUtils.getString("glyph_light_sensor").isBlank() 
-            && PreferenceManager.getDefaultSharedPreferences(context)
-            .getBoolean(Constants.GLYPH_AUTO_BRIGHTNESS_ENABLE, false) 
+        return !DeviceProfile.get().getLightSensor().isBlank() 
+            && get().getBoolean(Constants.GLYPH_AUTO_BRIGHTNESS_ENABLE, false) 
             && isGlyphEnabled();
     }
 }
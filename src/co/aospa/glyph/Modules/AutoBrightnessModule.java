@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2024 Neoteric OS
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Modules;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.util.Log;
+
+import java.util.List;
+
+import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.DeviceProfile;
+import co.aospa.glyph.Manager.BrightnessManager;
+
+public class AutoBrightnessModule extends GlyphModule {
+
+    private static final String TAG = "GlyphAutoBrightnessModule";
+    private static final boolean DEBUG = true;
+
+    // Weight of the previous average when filtering lux readings
+    private static final float LUX_FILTER_WEIGHT = 0.7f;
+    // How far past a level threshold the filtered lux has to go, in percent
+    private static final int BRIGHTENING_HYSTERESIS = 10;
+    private static final int DARKENING_HYSTERESIS = 20;
+    // Let the sensor hub buffer readings while the screen is off
+    private static final int SCREEN_OFF_MAX_REPORT_LATENCY_US = 5_000_000;
+
+    private SensorManager mSensorManager;
+    private PowerManager mPowerManager;
+    private Sensor mLightSensor;
+    // Resolved when the module is created, never while the class loads
+    private int[] mAutoBrightnessLux;
+    private int[] mBrightnessValues;
+
+    private float mFilteredLux = -1;
+    private int mLevel = -1;
+
+    public AutoBrightnessModule(Context context, Handler handler) {
+        super(context, handler);
+    }
+
+    @Override
+    public void onCreate() {
+        if (DEBUG) Log.d(TAG, "Creating module");
+
+        mAutoBrightnessLux = DeviceProfile.get().getAutoBrightnessLux();
+        mBrightnessValues = Constants.getBrightnessLevels();
+
+        mSensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
+
+        // Get light sensor type
+        int sensorType = 0;
+        String sensorName = DeviceProfile.get().getLightSensor();
+        List<Sensor> sensors = mSensorManager.getSensorList(Sensor.TYPE_ALL);
+        for (Sensor sensor : sensors) {
+            if (sensorName.equals(sensor.getStringType())) {
+                sensorType = sensor.getType();
+                break;
+            }
+        }
+
+        mLightSensor = mSensorManager.getDefaultSensor(sensorType);
+
+        mPowerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        registerSensor(mPowerManager.isInteractive());
+
+        IntentFilter screenMonitor = new IntentFilter();
+        screenMonitor.addAction(Intent.ACTION_SCREEN_ON);
+        screenMonitor.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(mScreenMonitor, screenMonitor, null, getHandler());
+    }
+
+    @Override
+    public void onStart() {
+        if (DEBUG) Log.d(TAG, "Starting module");
+    }
+
+    @Override
+    public void onDestroy() {
+        if (DEBUG) Log.d(TAG, "Destroying module");
+        this.unregisterReceiver(mScreenMonitor);
+        mSensorManager.unregisterListener(mSensorEventListener);
+    }
+
+    private void registerSensor(boolean interactive) {
+        if (DEBUG) Log.d(TAG, "Registering light sensor | interactive: " + interactive);
+        mSensorManager.unregisterListener(mSensorEventListener);
+        mSensorManager.registerListener(mSensorEventListener, mLightSensor,
+                SensorManager.SENSOR_DELAY_NORMAL,
+                interactive ? 0 : SCREEN_OFF_MAX_REPORT_LATENCY_US, getHandler());
+    }
+
+    private int findLevel(float lux) {
+        // Last level whose threshold is not above the given lux
+        int low = 0;
+        int high = mAutoBrightnessLux.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mAutoBrightnessLux[mid] <= lux) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private void onLuxChanged(float lux) {
+        if (mFilteredLux < 0) {
+            mFilteredLux = lux;
+        } else {
+            mFilteredLux = lux + LUX_FILTER_WEIGHT * (mFilteredLux - lux);
+        }
+
+        int level;
+        if (mLevel == -1) {
+            level = findLevel(mFilteredLux);
+        } else {
+            level = mLevel;
+            int brighter = findLevel(mFilteredLux * 100f / (100 + BRIGHTENING_HYSTERESIS));
+            int darker = findLevel(mFilteredLux * 100f / (100 - DARKENING_HYSTERESIS));
+            if (brighter > mLevel) {
+                level = brighter;
+            } else if (darker < mLevel) {
+                level = darker;
+            }
+        }
+
+        if (level == mLevel) return;
+        mLevel = level;
+
+        if (DEBUG) Log.d(TAG, "Brightness changed: " + "RealLux: " + lux
+                + " | FilteredLux: " + mFilteredLux + " | BrightnessLux: " + mAutoBrightnessLux[level]
+                + " | BrightnessValue: " + mBrightnessValues[level]);
+        BrightnessManager.rampTo(mBrightnessValues[level]);
+    }
+
+    private final BroadcastReceiver mScreenMonitor = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            registerSensor(intent.getAction().equals(Intent.ACTION_SCREEN_ON));
+        }
+    };
+
+    private final SensorEventListener mSensorEventListener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            onLuxChanged(event.values[0]);
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        }
+    };
+}
@@ -14,32 +14,27 @@
  * limitations under the License.
  */
 
-package co.aospa.glyph.Services;
+package co.aospa.glyph.Modules;
 
-import android.app.Service;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.media.AudioManager;
-import android.os.IBinder;
 import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
 import android.telephony.TelephonyManager;
 import android.util.Log;
 
 import co.aospa.glyph.Manager.AnimationManager;
 import co.aospa.glyph.Manager.SettingsManager;
 
-public class CallReceiverService extends Service {
+public class CallReceiverModule extends GlyphModule {
 
-    private static final String TAG = "GlyphCallReceiverService";
+    private static final String TAG = "GlyphCallReceiverModule";
     private static final boolean DEBUG = true;
 
     private AudioManager mAudioManager;
 
-    private HandlerThread thread;
     private Handler mThreadHandler;
 
     private Runnable playCall = new Runnable() {
@@ -49,15 +44,15 @@ public class CallReceiverService extends Service {
         }
     };
 
+    public CallReceiverModule(Context context, Handler handler) {
+        super(context, handler);
+    }
+
     @Override
     public void onCreate() {
-        if (DEBUG) Log.d(TAG, "Creating service");
+        if (DEBUG) Log.d(TAG, "Creating module");
 
-        // Add a handler thread
-        thread = new HandlerThread("CallReceiverService");
-        thread.start();
-        Looper looper = thread.getLooper();
-        mThreadHandler = new Handler(looper);
+        mThreadHandler = getHandler();
 
         mAudioManager = getSystemService(AudioManager.class);
         mAudioManager.addOnModeChangedListener(cmd -> mThreadHandler.post(cmd), mAudioManagerOnModeChangedListener);
@@ -65,28 +60,20 @@ public class CallReceiverService extends Service {
 
         IntentFilter callReceiver = new IntentFilter();
         callReceiver.addAction(TelephonyManager.ACTION_PHONE_STATE_CHANGED);
-        registerReceiver(mCallReceiver, callReceiver);
+        registerReceiver(mCallReceiver, callReceiver, null, mThreadHandler);
     }
 
     @Override
-    public int onStartCommand(Intent intent, int flags, int startId) {
-        if (DEBUG) Log.d(TAG, "Starting service");
-        return START_STICKY;
+    public void onStart() {
+        if (DEBUG) Log.d(TAG, "Starting module");
     }
 
     @Override
     public void onDestroy() {
-        if (DEBUG) Log.d(TAG, "Destroying service");
+        if (DEBUG) Log.d(TAG, "Destroying module");
         this.unregisterReceiver(mCallReceiver);
         mAudioManager.removeOnModeChangedListener(mAudioManagerOnModeChangedListener);
         disableCallAnimation();
-        thread.quit();
-        super.onDestroy();
-    }
-
-    @Override
-    public IBinder onBind(Intent intent) {
-        return null;
     }
 
     private void enableCallAnimation() {
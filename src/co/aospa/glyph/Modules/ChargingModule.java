@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2015 The CyanogenMod Project
+ *               2017-2018 The LineageOS Project
+ *               2020-2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Modules;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.util.Log;
+
+import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Manager.SettingsManager;
+import co.aospa.glyph.Sensors.AccelerometerHub;
+import co.aospa.glyph.Sensors.GestureEngine;
+import co.aospa.glyph.Sensors.LiftGesture;
+
+public class ChargingModule extends GlyphModule {
+
+    private static final String TAG = "GlyphChargingModule";
+    private static final boolean DEBUG = true;
+
+    private Handler mThreadHandler;
+
+    private BatteryManager mBatteryManager;
+    private GestureEngine mGestureEngine;
+    private LiftGesture mLiftGesture;
+
+    private PowerManager mPowerManager;
+    private PowerManager.WakeLock mWakeLock;
+
+    private static final int ACCELEROMETER_MAX_REPORT_LATENCY_US = 500_000;
+
+    // Charging rate sampling while the screen is on, slower while nothing changes. With
+    // the screen off the rate is only shown when the battery level goes up.
+    private static final int RATE_INTERVAL_MS = 5000;
+    private static final int RATE_INTERVAL_MAX_MS = 120000;
+    private static final int RATE_CURRENT_MIN_UA = 500_000;
+    private static final int RATE_CURRENT_MAX_UA = 4_000_000;
+    private static final long RATE_PULSE_MIN_NANOS = 400_000_000L;
+    private static final long RATE_PULSE_MAX_NANOS = 1_600_000_000L;
+    private static final int RATE_PULSES = 3;
+    // Upper bound for the wakelock in case the burst never reports its end
+    private static final long RATE_BURST_MARGIN_MS = 2000;
+
+    private boolean mRateSampling = false;
+    private int mRateInterval = 0;
+    private int mRateLastLevel = -1;
+    private int mRateLastCurrent = 0;
+
+    private Runnable sampleChargingRate = new Runnable() {
+        @Override
+        public void run() {
+            sampleChargingRate();
+        }
+    };
+
+    private Runnable releaseWakeLock = new Runnable() {
+        @Override
+        public void run() {
+            mWakeLock.release();
+        }
+    };
+
+    private Runnable dismissCharging = new Runnable() {
+        @Override
+        public void run() {
+            AnimationManager.dismissCharging();
+        }
+    };
+
+    public ChargingModule(Context context, Handler handler) {
+        super(context, handler);
+    }
+
+    @Override
+    public void onCreate() {
+        if (DEBUG) Log.d(TAG, "Creating module");
+        
+        mThreadHandler = getHandler();
+
+        mBatteryManager = (BatteryManager) getSystemService(Context.BATTERY_SERVICE);
+        mPowerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        mWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
+        mWakeLock.setReferenceCounted(false);
+
+        mGestureEngine = AccelerometerHub.getGestureEngine(this);
+        mLiftGesture = new LiftGesture();
+        mLiftGesture.setListener((gesture, active, timestamp) -> {
+            if (!mPowerManager.isInteractive()) playChargingAnimation();
+        });
+
+        IntentFilter powerMonitor = new IntentFilter();
+        powerMonitor.addAction(Intent.ACTION_POWER_CONNECTED);
+        powerMonitor.addAction(Intent.ACTION_POWER_DISCONNECTED);
+        powerMonitor.addAction(Intent.ACTION_SCREEN_ON);
+        powerMonitor.addAction(Intent.ACTION_SCREEN_OFF);
+        registerReceiver(mPowerMonitor, powerMonitor, null, mThreadHandler);
+    }
+
+    @Override
+    public void onStart() {
+        if (DEBUG) Log.d(TAG, "Starting module");
+        // Settings might have changed while charging
+        mThreadHandler.post(() -> {
+            if (mBatteryManager.isCharging()) updateChargingRate(true);
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        if (DEBUG) Log.d(TAG, "Destroying module");
+        this.unregisterReceiver(mPowerMonitor);
+        mGestureEngine.unregister(mLiftGesture);
+        // Directly, the engine thread may be quitting and drop anything posted now
+        if (mRateSampling) {
+            mRateSampling = false;
+            unregisterReceiver(mBatteryMonitor);
+        }
+        mThreadHandler.removeCallbacks(sampleChargingRate);
+        mWakeLock.release();
+    }
+
+    private int getBatteryLevel() {
+        return mBatteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+    }
+
+    private void onPowerConnected() {
+        if (DEBUG) Log.d(TAG, "Power connected");
+        if (DEBUG) Log.d(TAG, "Battery level: " + getBatteryLevel());
+        playChargingAnimation();
+        mGestureEngine.register(mLiftGesture, ACCELEROMETER_MAX_REPORT_LATENCY_US);
+        mThreadHandler.post(() -> updateChargingRate(true));
+    }
+
+    private void onPowerDisconnected() {
+        if (DEBUG) Log.d(TAG, "Power disconnected");
+        mGestureEngine.unregister(mLiftGesture);
+        mThreadHandler.post(() -> updateChargingRate(false));
+    }
+
+    private void updateChargingRate(boolean charging) {
+        boolean enabled = charging && SettingsManager.isGlyphChargingRateEnabled();
+        if (enabled == mRateSampling) return;
+        if (DEBUG) Log.d(TAG, "Charging rate sampling: " + enabled);
+        mRateSampling = enabled;
+        mRateLastLevel = -1;
+        mThreadHandler.removeCallbacks(sampleChargingRate);
+        if (enabled) {
+            // Level changes wake the device up anyway, unlike a handler delay in deep sleep
+            registerReceiver(mBatteryMonitor, new IntentFilter(Intent.ACTION_BATTERY_CHANGED),
+                    null, mThreadHandler);
+            mRateInterval = RATE_INTERVAL_MS;
+            if (mPowerManager.isInteractive())
+                mThreadHandler.postDelayed(sampleChargingRate, mRateInterval);
+        } else {
+            unregisterReceiver(mBatteryMonitor);
+        }
+    }
+
+    // Every sample is two property reads and one burst of frames, the wakelock only
+    // covers the burst while the screen is off and is released as soon as it ends.
+    private void sampleChargingRate() {
+        if (!SettingsManager.isGlyphChargingRateEnabled()) {
+            updateChargingRate(false);
+            return;
+        }
+
+        int level = getBatteryLevel();
+        int current = Math.abs(mBatteryManager.getIntProperty(
+                BatteryManager.BATTERY_PROPERTY_CURRENT_NOW));
+        boolean stable = level == mRateLastLevel
+                && Math.abs(current - mRateLastCurrent) <= mRateLastCurrent / 10;
+        mRateInterval = stable ? Math.min(mRateInterval * 2, RATE_INTERVAL_MAX_MS) : RATE_INTERVAL_MS;
+        mRateLastLevel = level;
+        mRateLastCurrent = current;
+
+        float speed = Math.max(0, Math.min((current - RATE_CURRENT_MIN_UA)
+                / (float) (RATE_CURRENT_MAX_UA - RATE_CURRENT_MIN_UA), 1));
+        long period = RATE_PULSE_MAX_NANOS - (long) (speed * (RATE_PULSE_MAX_NANOS - RATE_PULSE_MIN_NANOS));
+        boolean interactive = mPowerManager.isInteractive();
+        if (DEBUG) Log.d(TAG, "Charging rate | level: " + level + " | current: " + current
+                + "uA | pulse: " + period / 1_000_000L + "ms | next sample: "
+                + (interactive ? mRateInterval + "ms" : "level change"));
+
+        if (!interactive)
+            mWakeLock.acquire(period * RATE_PULSES / 1_000_000L + RATE_BURST_MARGIN_MS);
+        mThreadHandler.removeCallbacks(dismissCharging);
+        AnimationManager.playChargingRate(level, period, RATE_PULSES,
+                () -> mThreadHandler.post(releaseWakeLock));
+        if (interactive) mThreadHandler.postDelayed(sampleChargingRate, mRateInterval);
+    }
+
+    private void playChargingAnimation() {
+        if (mThreadHandler.hasCallbacks(dismissCharging))
+            mThreadHandler.removeCallbacks(dismissCharging);
+        // The meter animates on the frame clock, this never blocks the handler
+        mThreadHandler.post(() -> {
+            AnimationManager.playCharging(getBatteryLevel());
+        });
+        mThreadHandler.postDelayed(dismissCharging, 1190);
+    }
+
+    private final BroadcastReceiver mPowerMonitor = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (intent.getAction().equals(Intent.ACTION_POWER_CONNECTED)) {
+                onPowerConnected();
+            } else if (intent.getAction().equals(Intent.ACTION_POWER_DISCONNECTED)) {
+                onPowerDisconnected();
+            } else if (intent.getAction().equals(Intent.ACTION_SCREEN_ON)) {
+                // Sample right away, the screen off bursts only follow the level
+                if (!mRateSampling) return;
+                mRateInterval = RATE_INTERVAL_MS;
+                mThreadHandler.removeCallbacks(sampleChargingRate);
+                mThreadHandler.post(sampleChargingRate);
+            } else if (intent.getAction().equals(Intent.ACTION_SCREEN_OFF)) {
+                mThreadHandler.removeCallbacks(sampleChargingRate);
+            }
+        }
+    };
+
+    // Only drives the bursts while the screen is off, once per percent gained and
+    // never once full, instead of every few seconds all night long
+    private final BroadcastReceiver mBatteryMonitor = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (!mRateSampling || mPowerManager.isInteractive()) return;
+            int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+            int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1) * 100 / Math.max(scale, 1);
+            if (level < 0 || level == mRateLastLevel) return;
+            boolean first = mRateLastLevel == -1;
+            mRateLastLevel = level;
+            // The sticky broadcast comes right away, the connect animation already played
+            if (!first && level < 100) sampleChargingRate();
+        }
+    };
+}
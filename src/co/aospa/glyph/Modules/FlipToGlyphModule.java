@@ -16,13 +16,11 @@
  * limitations under the License.
  */
 
-package co.aospa.glyph.Services;
+package co.aospa.glyph.Modules;
 
-import android.app.Service;
 import android.content.Context;
-import android.content.Intent;
 import android.media.AudioManager;
-import android.os.IBinder;
+import android.os.Handler;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.util.Log;
@@ -30,9 +28,9 @@ import android.util.Log;
 import co.aospa.glyph.Manager.AnimationManager;
 import co.aospa.glyph.Sensors.FlipToGlyphSensor;
 
-public class FlipToGlyphService extends Service {
+public class FlipToGlyphModule extends GlyphModule {
 
-    private static final String TAG = "FlipToGlyphService";
+    private static final String TAG = "GlyphFlipToGlyphModule";
     private static final boolean DEBUG = true;
 
     private boolean isFlipped;
@@ -43,9 +41,13 @@ public class FlipToGlyphService extends Service {
     private PowerManager mPowerManager;
     private WakeLock mWakeLock;
 
+    public FlipToGlyphModule(Context context, Handler handler) {
+        super(context, handler);
+    }
+
     @Override
     public void onCreate() {
-        if (DEBUG) Log.d(TAG, "Creating service");
+        if (DEBUG) Log.d(TAG, "Creating module");
 
         mFlipToGlyphSensor = new FlipToGlyphSensor(this, this::onFlip);
 
@@ -56,22 +58,15 @@ public class FlipToGlyphService extends Service {
     }
 
     @Override
-    public int onStartCommand(Intent intent, int flags, int startId) {
-        if (DEBUG) Log.d(TAG, "Starting service");
+    public void onStart() {
+        if (DEBUG) Log.d(TAG, "Starting module");
         mFlipToGlyphSensor.enable();
-        return START_STICKY;
     }
 
     @Override
     public void onDestroy() {
-        if (DEBUG) Log.d(TAG, "Destroying service");
+        if (DEBUG) Log.d(TAG, "Destroying module");
         mFlipToGlyphSensor.disable();
-        super.onDestroy();
-    }
-
-    @Override
-    public IBinder onBind(Intent intent) {
-        return null;
     }
 
     private void onFlip(boolean flipped) {
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Modules;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Handler;
+
+// A feature hosted by GlyphEngineService. Modules share the engine's event loop,
+// every lifecycle call, receiver and listener should run on getHandler().
+public abstract class GlyphModule extends ContextWrapper {
+
+    private final Handler mHandler;
+
+    public GlyphModule(Context base, Handler handler) {
+        super(base);
+        mHandler = handler;
+    }
+
+    protected Handler getHandler() {
+        return mHandler;
+    }
+
+    public void onCreate() {}
+
+    // Called every time the engine is started while the module is enabled
+    public void onStart() {}
+
+    public void onDestroy() {}
+}
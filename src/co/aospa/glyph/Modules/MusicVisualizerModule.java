@@ -14,28 +14,22 @@
  * limitations under the License.
  */
 
-package co.aospa.glyph.Services;
+package co.aospa.glyph.Modules;
 
-import android.app.Service;
 import android.content.Context;
-import android.content.Intent;
 import android.media.AudioManager;
 import android.media.audiofx.Visualizer;
 import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.IBinder;
-import android.os.Looper;
 import android.util.Log;
 
 import co.aospa.glyph.Manager.AnimationManager;
 
-public class MusicVisualizerService extends Service {
+public class MusicVisualizerModule extends GlyphModule {
 
-    private static final String TAG = "GlyphMusicVisualizerService";
+    private static final String TAG = "GlyphMusicVisualizerModule";
     private static final boolean DEBUG = true;
 
     private AudioManager mAudioManager;
-    private HandlerThread thread;
     private Handler mHandler;
     private Visualizer mVisualizer;
     private int bufferSize;
@@ -53,15 +47,15 @@ public class MusicVisualizerService extends Service {
     private static final int MID_HIGH_FREQUENCY = 5000;
     private static final int HIGH_FREQUENCY = 10000;
 
+    public MusicVisualizerModule(Context context, Handler handler) {
+        super(context, handler);
+    }
+
     @Override
     public void onCreate() {
-        if (DEBUG) Log.d(TAG, "Creating service");
+        if (DEBUG) Log.d(TAG, "Creating module");
 
-        // Run visualizer on a handler thread
-        thread = new HandlerThread("MusicVisualizerService");
-        thread.start();
-        Looper looper = thread.getLooper();
-        mHandler = new Handler(looper);
+        mHandler = getHandler();
 
         // Get audio service
         mAudioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
@@ -109,23 +103,15 @@ public class MusicVisualizerService extends Service {
     }
 
     @Override
-    public int onStartCommand(Intent intent, int flags, int startId) {
-        if (DEBUG) Log.d(TAG, "Starting service");
-        return START_STICKY;
+    public void onStart() {
+        if (DEBUG) Log.d(TAG, "Starting module");
     }
 
     @Override
     public void onDestroy() {
-        if (DEBUG) Log.d(TAG, "Destroying service");
+        if (DEBUG) Log.d(TAG, "Destroying module");
         mVisualizer.setEnabled(false);
         mVisualizer.release();
-        thread.quit();
-        super.onDestroy();
-    }
-
-    @Override
-    public IBinder onBind(Intent intent) {
-        return null;
     }
 
     private void processAudioFFT(byte[] audioBytes, int samplingRate) {
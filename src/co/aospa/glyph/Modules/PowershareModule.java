@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2023-2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Modules;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.os.PowerManager.WakeLock;
+import android.util.Log;
+
+import co.aospa.glyph.Constants.DeviceProfile;
+import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Utils.NodeWatcher;
+
+public class PowershareModule extends GlyphModule {
+
+    private static final String TAG = "GlyphPowershareModule";
+    private static final boolean DEBUG = true;
+
+    private String mActivePath;
+    private String mEnabledPath;
+
+    private PowerManager mPowerManager;
+    private WakeLock mWakeLock;
+
+    private boolean mActive = false;
+    private boolean mEnabled = false;
+
+    public PowershareModule(Context context, Handler handler) {
+        super(context, handler);
+    }
+
+    @Override
+    public void onCreate() {
+        if (DEBUG) Log.d(TAG, "Creating module");
+        mActivePath = DeviceProfile.get().getPowershareActivePath();
+        mEnabledPath = DeviceProfile.get().getPowershareEnabledPath();
+        mPowerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        mWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
+    }
+
+    @Override
+    public void onStart() {
+        if (DEBUG) Log.d(TAG, "Starting module");
+        onPowershareEnabledChanged(NodeWatcher.watch(mEnabledPath, mEnabledCallback));
+    }
+
+    @Override
+    public void onDestroy() {
+        if (DEBUG) Log.d(TAG, "Destroying module");
+        NodeWatcher.unwatch(mEnabledPath, mEnabledCallback);
+        NodeWatcher.unwatch(mActivePath, mActiveCallback);
+    }
+
+    private synchronized void onPowershareEnabledChanged(int state) {
+        if (DEBUG) Log.d(TAG, "onPowershareEnabledChanged: " + state);
+        if (state == 1) {
+            if (mEnabled) return;
+            mEnabled = true;
+            onPowershareActiveChanged(NodeWatcher.watch(mActivePath, mActiveCallback));
+        } else {
+            mEnabled = false;
+            mActive = false;
+            NodeWatcher.unwatch(mActivePath, mActiveCallback);
+        }
+    }
+
+    private synchronized void onPowershareActiveChanged(int state) {
+        if (DEBUG) Log.d(TAG, "onPowershareActiveChanged: " + state);
+        if (state == 1) {
+            if (mActive || !mEnabled) return;
+            mActive = true;
+            mWakeLock.acquire(2500);
+            AnimationManager.playCsv("powershare", true);
+        } else {
+            mActive = false;
+        }
+    }
+
+    private final NodeWatcher.Callback mEnabledCallback = new NodeWatcher.Callback() {
+        @Override
+        public void onNodeChanged(String path, int value) {
+            onPowershareEnabledChanged(value);
+        }
+    };
+
+    private final NodeWatcher.Callback mActiveCallback = new NodeWatcher.Callback() {
+        @Override
+        public void onNodeChanged(String path, int value) {
+            onPowershareActiveChanged(value);
+        }
+    };
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2023-2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Modules;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioManager;
+import android.os.Handler;
+import android.util.Log;
+import android.util.SparseArray;
+
+import co.aospa.glyph.Manager.AnimationManager;
+import co.aospa.glyph.Manager.FrameManager;
+import co.aospa.glyph.Utils.ResourceUtils;
+
+public class VolumeLevelModule extends GlyphModule {
+
+    private static final String TAG = "GlyphVolumeLevelModule";
+    private static final boolean DEBUG = true;
+
+    // Volume changes closer together than a frame only update the meter once
+    private static final long COALESCE_DELAY_MS = FrameManager.FRAME_INTERVAL_NANOS / 1_000_000L;
+
+    private Handler mThreadHandler;
+
+    private AudioManager audioManager;
+
+    // Everything a key press needs, looked up once per stream type
+    private static final class Stream {
+        private final String name;
+        private final int maxVolume;
+        private int volume = -1;
+
+        private Stream(String name, int maxVolume) {
+            this.name = name;
+            this.maxVolume = maxVolume;
+        }
+    }
+
+    private final SparseArray<Stream> mStreams = new SparseArray<>();
+    private Stream mPendingStream;
+    private int mPendingVolume;
+    private int mEvents = 0;
+
+    private Runnable dismissVolume = new Runnable() {
+        @Override
+        public void run() {
+            AnimationManager.dismissVolume();
+        }
+    };
+
+    private Runnable updateVolume = new Runnable() {
+        @Override
+        public void run() {
+            updateVolume();
+        }
+    };
+
+    public VolumeLevelModule(Context context, Handler handler) {
+        super(context, handler);
+    }
+
+    @Override
+    public void onCreate() {
+        if (DEBUG) Log.d(TAG, "Creating module");
+        
+        mThreadHandler = getHandler();
+
+        audioManager = (AudioManager) getSystemService(AudioManager.class);
+
+        for (String name : ResourceUtils.getStringArray("glyph_settings_volume_streams")) {
+            int type = getStreamType(name);
+            if (type == -1) {
+                Log.w(TAG, "Unknown volume stream: " + name);
+                continue;
+            }
+            Stream stream = new Stream(name, audioManager.getStreamMaxVolume(type));
+            stream.volume = audioManager.getStreamVolume(type);
+            mStreams.put(type, stream);
+        }
+
+        IntentFilter volumeMonitor = new IntentFilter(AudioManager.VOLUME_CHANGED_ACTION);
+        registerReceiver(mVolumeMonitor, volumeMonitor, null, mThreadHandler);
+    }
+
+    @Override
+    public void onStart() {
+        if (DEBUG) Log.d(TAG, "Starting module");
+    }
+
+    @Override
+    public void onDestroy() {
+        if (DEBUG) Log.d(TAG, "Destroying module");
+        this.unregisterReceiver(mVolumeMonitor);
+    }
+
+    private static int getStreamType(String name) {
+        switch (name) {
+            case "music":
+                return AudioManager.STREAM_MUSIC;
+            case "ring":
+                return AudioManager.STREAM_RING;
+            case "alarm":
+                return AudioManager.STREAM_ALARM;
+            case "call":
+                return AudioManager.STREAM_VOICE_CALL;
+            default:
+                return -1;
+        }
+    }
+
+    private void updateVolume() {
+        Stream stream = mPendingStream;
+        int volume = mPendingVolume;
+        mPendingStream = null;
+        if (DEBUG) Log.d(TAG, "Volume changed | stream: " + stream.name + " | volume: " + volume
+                + "/" + stream.maxVolume + " | events: " + mEvents);
+        mEvents = 0;
+
+        mThreadHandler.removeCallbacks(dismissVolume);
+        AnimationManager.playVolume(stream.name, (int) Math.round(100D / stream.maxVolume * volume));
+        mThreadHandler.postDelayed(dismissVolume, 3000);
+    }
+
+    // The broadcast carries the new volume, a key press never has to call into AudioService
+    private final BroadcastReceiver mVolumeMonitor = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Stream stream = mStreams.get(intent.getIntExtra(AudioManager.EXTRA_VOLUME_STREAM_TYPE, -1));
+            if (stream == null) return;
+            int volume = intent.getIntExtra(AudioManager.EXTRA_VOLUME_STREAM_VALUE, stream.volume);
+            if (volume == stream.volume) return;
+            stream.volume = volume;
+
+            mEvents++;
+            mPendingStream = stream;
+            mPendingVolume = volume;
+            if (mThreadHandler.hasCallbacks(updateVolume)) return;
+            mThreadHandler.postDelayed(updateVolume, COALESCE_DELAY_MS);
+        }
+    };
+}
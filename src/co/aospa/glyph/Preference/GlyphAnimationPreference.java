@@ -16,62 +16,71 @@
 
 package co.aospa.glyph.Preference;
 
-import android.app.Activity;
 import android.content.Context;
-import android.content.ContextWrapper;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ImageView;
 import android.widget.FrameLayout;
 
 import androidx.preference.Preference;
 import androidx.preference.PreferenceViewHolder;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import co.aospa.glyph.R;
-import co.aospa.glyph.Constants.Constants;
-import co.aospa.glyph.Utils.ResourceUtils;
+import co.aospa.glyph.Utils.AnimationTimeline;
+import co.aospa.glyph.Utils.GlyphAnimation;
 
 public class GlyphAnimationPreference extends Preference {
 
     private final String TAG = "GlyphAnimationPreference";
     private final boolean DEBUG = true;
 
-    private Activity mActivity;
+    // Animations are decoded off the UI thread, one at a time for every preview
+    private static final ExecutorService sDecoder = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "GlyphPreviewDecoder"));
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // Bumped on every update, a decode finishing after a newer update is dropped
+    private int mRequest = 0;
 
     private String animationName;
-    private boolean animationTerminated;
+    private boolean animationAttached;
     private boolean animationPaused = true;
     private int animationTimeBetween = 0;
-    private String[] animationSlugs;
-    private ImageView[] animationImgs;
+    private GlyphPreviewView mPreviewView;
+
+    // Frames are drawn from the UI thread's Choreographer, nothing runs while the
+    // preview is paused or not on screen
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private GlyphAnimation mTimeline;
+    private int[] mFrame;
+    private long mStartNanos = -1;
+    private int mLastFrame = -1;
+    private boolean mFrameScheduled;
 
     private View mRootView;
     private final View.OnClickListener mClickListener = v -> performClick(v);
 
     public GlyphAnimationPreference(Context context) {
         super(context);
-        setActivity(context);
         setLayout(R.layout.glyph_settings_preview);
     }
     public GlyphAnimationPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
-        setActivity(context);
         setLayout(R.layout.glyph_settings_preview);
     }
     public GlyphAnimationPreference(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        setActivity(context);
         setLayout(R.layout.glyph_settings_preview);
     }
     public GlyphAnimationPreference(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
         super(context, attrs, defStyleAttr);
-        setActivity(context);
         setLayout(defStyleRes);
     }
 
@@ -79,19 +88,12 @@ public class GlyphAnimationPreference extends Preference {
         setLayoutResource(R.layout.glyph_settings_preview_frame);
         mRootView = LayoutInflater.from(getContext())
                 .inflate(layoutResource, null, false);
+        mRootView.addOnAttachStateChangeListener(mAttachStateListener);
+        mPreviewView = (GlyphPreviewView) mRootView.findViewById(R.id.preview_device);
+        mFrame = new int[mPreviewView.getZoneCount()];
         setShouldDisableView(false);
     }
 
-    private void setActivity(Context context) {
-        if (context instanceof ContextWrapper) {
-            if (context instanceof Activity) {
-                mActivity = (Activity) context;
-            } else {
-                setActivity(((ContextWrapper) context).getBaseContext());
-            }
-        }
-    }
-
     @Override
     public void onBindViewHolder(PreferenceViewHolder holder) {
         holder.itemView.setOnClickListener(mClickListener);
@@ -124,18 +126,13 @@ public class GlyphAnimationPreference extends Preference {
     }
 
     private void startAnimation() {
-        animationSlugs = ResourceUtils.getStringArray("glyph_settings_animations_slugs");
-        animationImgs = new ImageView[animationSlugs.length];
-        for (int i = 0; i < animationSlugs.length; i++) {
-            animationImgs[i] = (ImageView) mRootView.findViewById(
-                ResourceUtils.getIdentifier("preview_device_" + animationSlugs[i], "id"));
-        }
-        animationThread.start();
+        animationAttached = true;
+        scheduleFrame();
     }
 
     private void stopAnimation() {
-        animationTerminated = true;
-        animationThread.interrupt();
+        animationAttached = false;
+        cancelFrame();
     }
 
     public void updateAnimation(boolean play) {
@@ -147,88 +144,115 @@ public class GlyphAnimationPreference extends Preference {
     }
 
     public void updateAnimation(boolean play, String name, int time) {
+        // Decoded once, every loop replays the same frames
+        GlyphAnimation cached = play ? AnimationTimeline.getCached(name) : null;
+        if (!play || cached != null) {
+            updateAnimation(play, name, cached, time);
+            return;
+        }
+
+        // Nothing is drawn until the frames are ready
+        final int request = ++mRequest;
+        animationName = name;
+        animationPaused = true;
+        mTimeline = null;
+        cancelFrame();
+        clearFrame();
+        if (DEBUG) Log.d(TAG, "Decoding animation | name: " + name);
+        sDecoder.execute(() -> {
+            GlyphAnimation animation = AnimationTimeline.get(name);
+            mHandler.post(() -> {
+                if (request != mRequest) return;
+                updateAnimation(true, name, animation, time);
+            });
+        });
+    }
+
+    private void updateAnimation(boolean play, String name, GlyphAnimation animation, int time) {
+        mRequest++;
         animationTimeBetween = time;
         animationName = name;
         animationPaused = !play;
-        animationThread.interrupt();
+        mTimeline = play ? animation : null;
+        // Timelines hold full device frames, one value per preview zone
+        if (play && (mTimeline == null
+                || mTimeline.getFrameLength() != mPreviewView.getZoneCount())) {
+            if (DEBUG) Log.d(TAG, "Animation can't be displayed | name: " + animationName);
+            mTimeline = null;
+            animationPaused = true;
+        }
+        if (DEBUG) Log.d(TAG, "Displaying animation | name: " + animationName + " | play: " + !animationPaused);
+
+        cancelFrame();
+        mStartNanos = -1;
+        mLastFrame = -1;
+        if (animationPaused) {
+            clearFrame();
+        } else {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        if (mFrameScheduled || animationPaused || !animationAttached
+                || !mRootView.isAttachedToWindow()) return;
+        mFrameScheduled = true;
+        mChoreographer.postFrameCallback(mFrameCallback);
     }
 
-    Thread animationThread = new Thread() {
+    private void cancelFrame() {
+        mFrameScheduled = false;
+        mChoreographer.removeFrameCallback(mFrameCallback);
+    }
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
         @Override
-        public void run() {
-            while (!animationTerminated) {
-                while (animationPaused) {}
-                if (DEBUG) Log.d(TAG, "Displaying animation | name: " + animationName);
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(
-                        ResourceUtils.getAnimation(animationName)))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        line = line.replace(" ", "");
-                        line = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
-                        String[] split = line.split(",");
-                        if (Constants.getDevice().equals("phone1") && split.length == 5) { // Phone (1) pattern on Phone (1)
-                            mActivity.runOnUiThread(() -> {
-                                for (int i = 0; i < animationSlugs.length; i++) {
-                                    setGlyphsDrawable(animationImgs[i], Integer.parseInt(split[i]));
-                                }
-                            });
-                        } else if (Constants.getDevice().equals("phone2") && split.length == 5) { // Phone (1) pattern on Phone (2)
-                            mActivity.runOnUiThread(() -> {
-                                    setGlyphsDrawable(animationImgs[0], Integer.parseInt(split[0]));
-                                    setGlyphsDrawable(animationImgs[1], Integer.parseInt(split[0]));
-                                    setGlyphsDrawable(animationImgs[2], Integer.parseInt(split[1]));
-                                    setGlyphsDrawable(animationImgs[3], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[4], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[5], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[6], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[7], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[8], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[9], Integer.parseInt(split[3]));
-                                    setGlyphsDrawable(animationImgs[10], Integer.parseInt(split[4]));
-                            });
-                        } else if (Constants.getDevice().equals("phone2") && split.length == 33) { // Phone (2) pattern on Phone (2)
-                            mActivity.runOnUiThread(() -> {
-                                    setGlyphsDrawable(animationImgs[0], Integer.parseInt(split[0]));
-                                    setGlyphsDrawable(animationImgs[1], Integer.parseInt(split[1]));
-                                    setGlyphsDrawable(animationImgs[2], Integer.parseInt(split[2]));
-                                    setGlyphsDrawable(animationImgs[3], Integer.parseInt(split[3]));
-                                    setGlyphsDrawable(animationImgs[4], Integer.parseInt(split[19]));
-                                    setGlyphsDrawable(animationImgs[5], Integer.parseInt(split[20]));
-                                    setGlyphsDrawable(animationImgs[6], Integer.parseInt(split[21]));
-                                    setGlyphsDrawable(animationImgs[7], Integer.parseInt(split[22]));
-                                    setGlyphsDrawable(animationImgs[8], Integer.parseInt(split[23]));
-                                    setGlyphsDrawable(animationImgs[9], Integer.parseInt(split[25]));
-                                    setGlyphsDrawable(animationImgs[10], Integer.parseInt(split[24]));
-                            });
-                        } else {
-                            if (DEBUG) Log.d(TAG, "Animation line length mismatch | name: " + animationName + " | line: " + line);
-                            updateAnimation(false);
-                        }
-                        Thread.sleep(16, 666000);
-                    }
-                    Thread.sleep(animationTimeBetween);
-                } catch (Exception e) {
-                    if (DEBUG) Log.d(TAG, "Exception while displaying animation | name: " + animationName + " | exception: " + e);
-                } finally {
-                    if (animationPaused) {
-                        if (DEBUG) Log.d(TAG, "Pause displaying animation | name: " + animationName);
-                        mActivity.runOnUiThread(() -> {
-                            for (int i = 0; i < animationSlugs.length; i++) {
-                                setGlyphsDrawable(animationImgs[i], 0);
-                            }
-                        });
-                    }
-                }
+        public void doFrame(long frameTimeNanos) {
+            mFrameScheduled = false;
+            GlyphAnimation timeline = mTimeline;
+            if (timeline == null || animationPaused) return;
+
+            if (mStartNanos == -1) mStartNanos = frameTimeNanos;
+            int frame = (int) ((frameTimeNanos - mStartNanos) / AnimationTimeline.FRAME_INTERVAL_NANOS);
+            if (frame >= timeline.getFrameCount()) {
+                // Done, keep the last frame for the time between loops and start over
+                drawFrame(timeline, timeline.getFrameCount() - 1);
+                mStartNanos = -1;
+                mLastFrame = -1;
+                mFrameScheduled = true;
+                mChoreographer.postFrameCallbackDelayed(this, animationTimeBetween);
+                return;
             }
+            drawFrame(timeline, frame);
+            scheduleFrame();
         }
-        
-        private void setGlyphsDrawable(ImageView imageView, int brightness) {
-            if (brightness <= 0) {
-                imageView.setAlpha(0.3f);
-            } else {
-                float brightnessFactor = (float) (0.4 + 0.6 * (brightness / (double) Constants.getMaxBrightness()));
-                imageView.setAlpha(brightnessFactor);
-            }
+    };
+
+    private final View.OnAttachStateChangeListener mAttachStateListener =
+            new View.OnAttachStateChangeListener() {
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            scheduleFrame();
+        }
+
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            // Scrolled off screen, resume from the start once it is back
+            cancelFrame();
+            mStartNanos = -1;
+            mLastFrame = -1;
         }
     };
+
+    private void drawFrame(GlyphAnimation timeline, int frame) {
+        if (frame == mLastFrame) return;
+        mLastFrame = frame;
+
+        timeline.copyFrame(frame, mFrame);
+        mPreviewView.setFrame(mFrame);
+    }
+
+    private void clearFrame() {
+        mPreviewView.clear();
+    }
 }
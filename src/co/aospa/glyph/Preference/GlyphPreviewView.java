@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Preference;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.content.res.XmlResourceParser;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.PathParser;
+import android.view.View;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import co.aospa.glyph.R;
+import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Utils.ResourceUtils;
+
+// Draws every Glyph zone of the device in a single pass. The outlines are read
+// from the device drawables once, a frame only changes the alpha of each zone.
+public class GlyphPreviewView extends View {
+
+    private static final String TAG = "GlyphPreviewView";
+    private static final boolean DEBUG = true;
+
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+    private static final int ALPHA_OFF = Math.round(255 * 0.3f);
+    private static final float ALPHA_MIN = 0.4f;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    // Outline of each zone, zones of a split drawable share its path
+    private Path[] mPaths = new Path[0];
+    // Part of the outline a zone covers, null when it covers all of it
+    private RectF[] mClips = new RectF[0];
+    private int[] mAlphas = new int[0];
+
+    public GlyphPreviewView(Context context) {
+        this(context, null);
+    }
+
+    public GlyphPreviewView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public GlyphPreviewView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        mPaint.setColor(context.getColor(R.color.glyph_settings_device_glyph_color));
+        mPaint.setStyle(Paint.Style.FILL);
+        loadZones();
+    }
+
+    private void loadZones() {
+        Resources resources = getResources();
+        String[] drawables = ResourceUtils.getStringArray("glyph_settings_preview_zones");
+        int[] segments = ResourceUtils.getIntArray("glyph_settings_preview_segments");
+        TypedArray bounds = resources.obtainTypedArray(
+                ResourceUtils.getIdentifier("glyph_settings_preview_bounds", "array"));
+
+        ArrayList<Path> paths = new ArrayList<>();
+        ArrayList<RectF> clips = new ArrayList<>();
+        try {
+            for (int i = 0; i < drawables.length; i++) {
+                RectF rect = new RectF();
+                rect.left = bounds.getDimension(i * 4, 0);
+                rect.top = bounds.getDimension(i * 4 + 1, 0);
+                rect.right = rect.left + bounds.getDimension(i * 4 + 2, 0);
+                rect.bottom = rect.top + bounds.getDimension(i * 4 + 3, 0);
+
+                Path path = loadPath(ResourceUtils.getIdentifier(drawables[i], "drawable"), rect);
+                int count = i < segments.length ? Math.max(segments[i], 1) : 1;
+                for (int j = 0; j < count; j++) {
+                    paths.add(path);
+                    clips.add(count == 1 ? null : getSegment(rect, j, count));
+                }
+            }
+        } finally {
+            bounds.recycle();
+        }
+
+        mPaths = paths.toArray(new Path[0]);
+        mClips = clips.toArray(new RectF[0]);
+        mAlphas = new int[mPaths.length];
+        Arrays.fill(mAlphas, ALPHA_OFF);
+        if (DEBUG) Log.d(TAG, "Loaded zones | drawables: " + drawables.length + " | zones: " + mPaths.length);
+    }
+
+    // Vector drawable outline scaled from its viewport into the given bounds
+    private Path loadPath(int drawable, RectF rect) {
+        Path path = new Path();
+        try (XmlResourceParser parser = getResources().getXml(drawable)) {
+            float viewportWidth = 1, viewportHeight = 1;
+            int type;
+            while ((type = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (type != XmlPullParser.START_TAG) continue;
+                if ("vector".equals(parser.getName())) {
+                    viewportWidth = parser.getAttributeFloatValue(ANDROID_NS, "viewportWidth", 1);
+                    viewportHeight = parser.getAttributeFloatValue(ANDROID_NS, "viewportHeight", 1);
+                } else if ("path".equals(parser.getName())) {
+                    Path part = PathParser.createPathFromPathData(
+                            parser.getAttributeValue(ANDROID_NS, "pathData"));
+                    // 0 is nonZero, 1 is evenOdd
+                    if (parser.getAttributeIntValue(ANDROID_NS, "fillType", 0) == 1) {
+                        part.setFillType(Path.FillType.EVEN_ODD);
+                    }
+                    path.addPath(part);
+                }
+            }
+            Matrix matrix = new Matrix();
+            matrix.setScale(rect.width() / viewportWidth, rect.height() / viewportHeight);
+            matrix.postTranslate(rect.left, rect.top);
+            path.transform(matrix);
+        } catch (Exception e) {
+            Log.e(TAG, "Could not load zone outline " + drawable, e);
+        }
+        return path;
+    }
+
+    // Drawables holding several LEDs are split along their longer side
+    private static RectF getSegment(RectF rect, int index, int count) {
+        if (rect.width() >= rect.height()) {
+            float step = rect.width() / count;
+            return new RectF(rect.left + step * index, rect.top,
+                    rect.left + step * (index + 1), rect.bottom);
+        }
+        float step = rect.height() / count;
+        return new RectF(rect.left, rect.top + step * index,
+                rect.right, rect.top + step * (index + 1));
+    }
+
+    public int getZoneCount() {
+        return mPaths.length;
+    }
+
+    // Brightness of every zone, 0 - Constants.MAX_PATTERN_BRIGHTNESS
+    public void setFrame(int[] frame) {
+        boolean changed = false;
+        for (int i = 0; i < mAlphas.length && i < frame.length; i++) {
+            int alpha = toAlpha(frame[i]);
+            if (mAlphas[i] != alpha) {
+                mAlphas[i] = alpha;
+                changed = true;
+            }
+        }
+        if (changed) invalidate();
+    }
+
+    public void clear() {
+        boolean changed = false;
+        for (int i = 0; i < mAlphas.length; i++) {
+            if (mAlphas[i] != ALPHA_OFF) {
+                mAlphas[i] = ALPHA_OFF;
+                changed = true;
+            }
+        }
+        if (changed) invalidate();
+    }
+
+    private static int toAlpha(int brightness) {
+        if (brightness <= 0) return ALPHA_OFF;
+        float factor = Math.min(brightness / (float) Constants.MAX_PATTERN_BRIGHTNESS, 1f);
+        return Math.round(255 * (ALPHA_MIN + (1 - ALPHA_MIN) * factor));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        for (int i = 0; i < mPaths.length; i++) {
+            mPaint.setAlpha(mAlphas[i]);
+            if (mClips[i] == null) {
+                canvas.drawPath(mPaths[i], mPaint);
+                continue;
+            }
+            int save = canvas.save();
+            canvas.clipRect(mClips[i]);
+            canvas.drawPath(mPaths[i], mPaint);
+            canvas.restoreToCount(save);
+        }
+    }
+}
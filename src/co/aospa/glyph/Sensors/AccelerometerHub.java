@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sensors;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+
+public final class AccelerometerHub implements SensorEventListener {
+
+    private static final boolean DEBUG = true;
+    private static final String TAG = "GlyphAccelerometerHub";
+
+    // SENSOR_DELAY_NORMAL, explicit so the batch accounting knows the event spacing
+    private static final int SAMPLING_PERIOD_US = 200000;
+    // Events arriving further apart than this started a new batch. Streamed events come
+    // once per period, a batch arrives in a burst after up to the report latency.
+    private static final long BATCH_GAP_MS = 2 * SAMPLING_PERIOD_US / 1000;
+
+    public interface Listener {
+        void onAccelerometerChanged(long timestamp, float x, float y, float z);
+    }
+
+    private static AccelerometerHub sInstance;
+    private static GestureEngine sGestureEngine;
+
+    private final SensorManager mSensorManager;
+    private final Sensor mSensorAccelerometer;
+
+    private HandlerThread mThread;
+    private Handler mHandler;
+
+    private Listener[] mListeners = new Listener[0];
+    private int[] mLatencies = new int[0];
+    private int mRegisteredLatency = -1;
+
+    // Guarded by this, written on the sensor thread and read from dumps
+    private long mEvents = 0;
+    private long mBatches = 0;
+    private long mLastDeliveryTime = 0;
+    private long mRegisteredTime = 0;
+    private long mRegisteredDuration = 0;
+
+    public static synchronized AccelerometerHub getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AccelerometerHub(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    // One engine for all gestures of the app, subscribed while any gesture is registered
+    public static synchronized GestureEngine getGestureEngine(Context context) {
+        if (sGestureEngine == null) {
+            sGestureEngine = new GestureEngine(new GestureFeed(getInstance(context)));
+        }
+        return sGestureEngine;
+    }
+
+    private AccelerometerHub(Context context) {
+        mSensorManager = context.getSystemService(SensorManager.class);
+        mSensorAccelerometer = mSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER, false);
+    }
+
+    public synchronized void subscribe(Listener listener, int maxReportLatencyUs) {
+        int index = Arrays.asList(mListeners).indexOf(listener);
+        if (index == -1) {
+            mListeners = Arrays.copyOf(mListeners, mListeners.length + 1);
+            mLatencies = Arrays.copyOf(mLatencies, mLatencies.length + 1);
+            index = mListeners.length - 1;
+            mListeners[index] = listener;
+        }
+        mLatencies[index] = maxReportLatencyUs;
+        if (DEBUG) Log.d(TAG, "Subscribed | listeners: " + mListeners.length);
+        updateRegistration();
+    }
+
+    public synchronized void unsubscribe(Listener listener) {
+        int index = Arrays.asList(mListeners).indexOf(listener);
+        if (index == -1) return;
+
+        Listener[] listeners = new Listener[mListeners.length - 1];
+        int[] latencies = new int[mLatencies.length - 1];
+        for (int i = 0, j = 0; i < mListeners.length; i++) {
+            if (i == index) continue;
+            listeners[j] = mListeners[i];
+            latencies[j++] = mLatencies[i];
+        }
+        mListeners = listeners;
+        mLatencies = latencies;
+        if (DEBUG) Log.d(TAG, "Unsubscribed | listeners: " + mListeners.length);
+        updateRegistration();
+    }
+
+    // The sensor is registered once, with the tightest latency any listener asked for
+    private void updateRegistration() {
+        int latency = -1;
+        for (int l : mLatencies) {
+            latency = latency == -1 ? l : Math.min(latency, l);
+        }
+        if (latency == mRegisteredLatency) return;
+
+        if (mRegisteredLatency != -1) {
+            mSensorManager.unregisterListener(this, mSensorAccelerometer);
+            mRegisteredDuration += SystemClock.elapsedRealtime() - mRegisteredTime;
+            if (DEBUG) Log.d(TAG, "Unregistered | events/sec: " + getEventsPerSecond()
+                    + " | batches/hour: " + getBatchesPerHour()
+                    + " | events/batch: " + getEventsPerBatch());
+        }
+        mRegisteredLatency = latency;
+
+        if (latency == -1) {
+            mThread.quitSafely();
+            mThread = null;
+            mHandler = null;
+            return;
+        }
+
+        if (mThread == null) {
+            mThread = new HandlerThread("GlyphSensorThread");
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+        }
+        if (DEBUG) Log.d(TAG, "Registering | max report latency: " + latency + "us");
+        mRegisteredTime = SystemClock.elapsedRealtime();
+        mSensorManager.registerListener(this, mSensorAccelerometer,
+                SAMPLING_PERIOD_US, latency, mHandler);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (event.sensor.getType() != Sensor.TYPE_ACCELEROMETER) return;
+
+        Listener[] listeners;
+        synchronized (this) {
+            // Counts batch deliveries, not wakeups, the sensor is the non-wakeup one.
+            // Working batching shows few batches with many events each, a stream shows
+            // a single batch that never ends.
+            long now = SystemClock.elapsedRealtime();
+            if (now - mLastDeliveryTime > BATCH_GAP_MS) mBatches++;
+            mLastDeliveryTime = now;
+            mEvents++;
+            listeners = mListeners;
+        }
+        for (Listener listener : listeners) {
+            listener.onAccelerometerChanged(event.timestamp,
+                    event.values[0], event.values[1], event.values[2]);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+
+    private synchronized long getRegisteredDuration() {
+        long duration = mRegisteredDuration;
+        if (mRegisteredLatency != -1) duration += SystemClock.elapsedRealtime() - mRegisteredTime;
+        return duration;
+    }
+
+    public synchronized float getEventsPerSecond() {
+        long duration = getRegisteredDuration();
+        return duration > 0 ? mEvents * 1000f / duration : 0;
+    }
+
+    public synchronized float getBatchesPerHour() {
+        long duration = getRegisteredDuration();
+        return duration > 0 ? mBatches * 3_600_000f / duration : 0;
+    }
+
+    public synchronized float getEventsPerBatch() {
+        return mBatches > 0 ? mEvents / (float) mBatches : 0;
+    }
+
+    private static final class GestureFeed implements Listener, GestureEngine.Source {
+        private final AccelerometerHub mHub;
+        private GestureEngine mEngine;
+
+        GestureFeed(AccelerometerHub hub) {
+            mHub = hub;
+        }
+
+        @Override
+        public void onLatencyChanged(GestureEngine engine, int maxReportLatencyUs) {
+            mEngine = engine;
+            if (maxReportLatencyUs == -1) {
+                mHub.unsubscribe(this);
+            } else {
+                mHub.subscribe(this, maxReportLatencyUs);
+            }
+        }
+
+        @Override
+        public void onAccelerometerChanged(long timestamp, float x, float y, float z) {
+            mEngine.onAccelerometerChanged(timestamp, x, y, z);
+        }
+    }
+}
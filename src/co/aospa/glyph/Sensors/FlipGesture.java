@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sensors;
+
+// Device lying still and face down for a while, ends once it is picked up
+public class FlipGesture extends Gesture {
+
+    private static final long TIME_THRESHOLD_NANOS = 1_000_000_000L;
+    private static final float ACCELERATION_THRESHOLD = 0.2f;
+    private static final float Z_ACCELERATION_THRESHOLD = -9.5f;
+    private static final float Z_ACCELERATION_THRESHOLD_LENIENT = Z_ACCELERATION_THRESHOLD + 1.0f;
+
+    private boolean mFlipped = false;
+    private float mPrevAcceleration = 0;
+    private long mPrevAccelerationTime = 0;
+    private boolean mZAccelerationIsFaceDown = false;
+    private long mZAccelerationFaceDownTime = 0L;
+
+    @Override
+    public String getName() {
+        return "flip";
+    }
+
+    public boolean isFlipped() {
+        return mFlipped;
+    }
+
+    @Override
+    protected void onSample(GestureEngine.Motion motion) {
+        final long curTime = motion.timestamp;
+        if (Math.abs(motion.xyAverage - mPrevAcceleration) > ACCELERATION_THRESHOLD) {
+            mPrevAcceleration = motion.xyAverage;
+            mPrevAccelerationTime = curTime;
+        }
+        final boolean moving = curTime - mPrevAccelerationTime <= TIME_THRESHOLD_NANOS;
+
+        final float zAccelerationThreshold =
+                mFlipped ? Z_ACCELERATION_THRESHOLD_LENIENT : Z_ACCELERATION_THRESHOLD;
+        final boolean isCurrentlyFaceDown = motion.zAverage < zAccelerationThreshold;
+        final boolean isFaceDownForPeriod = isCurrentlyFaceDown
+                && mZAccelerationIsFaceDown
+                && curTime - mZAccelerationFaceDownTime > TIME_THRESHOLD_NANOS;
+        if (isCurrentlyFaceDown && !mZAccelerationIsFaceDown) {
+            mZAccelerationFaceDownTime = curTime;
+            mZAccelerationIsFaceDown = true;
+        } else if (!isCurrentlyFaceDown) {
+            mZAccelerationIsFaceDown = false;
+        }
+
+        if (!moving && isFaceDownForPeriod && !mFlipped) {
+            mFlipped = true;
+            report(true, curTime);
+        } else if (!isFaceDownForPeriod && mFlipped) {
+            mFlipped = false;
+            report(false, curTime);
+        }
+    }
+
+    @Override
+    protected void reset() {
+        mFlipped = false;
+        mPrevAcceleration = 0;
+        mPrevAccelerationTime = 0;
+        mZAccelerationIsFaceDown = false;
+        mZAccelerationFaceDownTime = 0L;
+    }
+}
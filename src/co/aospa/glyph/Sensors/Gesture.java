@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sensors;
+
+public abstract class Gesture {
+
+    public interface Listener {
+        // Momentary gestures only report active = true, stateful ones also report when they end
+        void onGesture(Gesture gesture, boolean active, long timestamp);
+    }
+
+    private Listener mListener;
+    private int mDetections = 0;
+    private long mLastDetectionTime = 0;
+
+    public abstract String getName();
+
+    protected abstract void onSample(GestureEngine.Motion motion);
+
+    protected abstract void reset();
+
+    public final void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    protected final void report(boolean active, long timestamp) {
+        if (active) {
+            mDetections++;
+            mLastDetectionTime = timestamp;
+        }
+        Listener listener = mListener;
+        if (listener != null) listener.onGesture(this, active, timestamp);
+    }
+
+    public final int getDetectionCount() {
+        return mDetections;
+    }
+
+    public final long getLastDetectionTime() {
+        return mLastDetectionTime;
+    }
+}
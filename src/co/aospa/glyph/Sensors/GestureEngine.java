@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sensors;
+
+import java.util.Arrays;
+
+// Runs every registered gesture over each accelerometer sample. Plain Java on
+// purpose, the host tests replay recorded traces through it.
+public final class GestureEngine {
+
+    private static final float MOVING_AVERAGE_WEIGHT = 0.5f;
+
+    // Where the samples come from, told the tightest latency any gesture asked for
+    public interface Source {
+        void onLatencyChanged(GestureEngine engine, int maxReportLatencyUs);
+    }
+
+    private final Source mSource;
+
+    private Gesture[] mGestures = new Gesture[0];
+    private int[] mLatencies = new int[0];
+
+    private final Motion mMotion = new Motion();
+    private final ExponentialMovingAverage mCurrentXYAcceleration =
+            new ExponentialMovingAverage(MOVING_AVERAGE_WEIGHT);
+    private final ExponentialMovingAverage mCurrentZAcceleration =
+            new ExponentialMovingAverage(MOVING_AVERAGE_WEIGHT);
+
+    // Features shared by all gestures, computed once per sample
+    public static final class Motion {
+        public long timestamp;
+        public float x;
+        public float y;
+        public float z;
+        public float magnitudeSquared;
+        public float xyAverage;
+        public float zAverage;
+    }
+
+    // Detached engine, only fed through replay()
+    public GestureEngine() {
+        this(null);
+    }
+
+    // See AccelerometerHub.getGestureEngine() for the one fed by the sensor
+    public GestureEngine(Source source) {
+        mSource = source;
+    }
+
+    public synchronized void register(Gesture gesture, int maxReportLatencyUs) {
+        int index = Arrays.asList(mGestures).indexOf(gesture);
+        if (index == -1) {
+            if (mGestures.length == 0) {
+                mCurrentXYAcceleration.reset();
+                mCurrentZAcceleration.reset();
+            }
+            mGestures = Arrays.copyOf(mGestures, mGestures.length + 1);
+            mLatencies = Arrays.copyOf(mLatencies, mLatencies.length + 1);
+            index = mGestures.length - 1;
+            mGestures[index] = gesture;
+            gesture.reset();
+        }
+        mLatencies[index] = maxReportLatencyUs;
+        updateSubscription();
+    }
+
+    public synchronized void unregister(Gesture gesture) {
+        int index = Arrays.asList(mGestures).indexOf(gesture);
+        if (index == -1) return;
+
+        Gesture[] gestures = new Gesture[mGestures.length - 1];
+        int[] latencies = new int[mLatencies.length - 1];
+        for (int i = 0, j = 0; i < mGestures.length; i++) {
+            if (i == index) continue;
+            gestures[j] = mGestures[i];
+            latencies[j++] = mLatencies[i];
+        }
+        mGestures = gestures;
+        mLatencies = latencies;
+        updateSubscription();
+    }
+
+    // -1 once no gesture is left
+    private void updateSubscription() {
+        if (mSource == null) return;
+        int latency = -1;
+        for (int l : mLatencies) {
+            latency = latency == -1 ? l : Math.min(latency, l);
+        }
+        mSource.onLatencyChanged(this, latency);
+    }
+
+    public void onAccelerometerChanged(long timestamp, float x, float y, float z) {
+        Gesture[] gestures;
+        synchronized (this) {
+            gestures = mGestures;
+        }
+
+        mCurrentXYAcceleration.updateMovingAverage(x * x + y * y);
+        mCurrentZAcceleration.updateMovingAverage(z);
+
+        mMotion.timestamp = timestamp;
+        mMotion.x = x;
+        mMotion.y = y;
+        mMotion.z = z;
+        mMotion.magnitudeSquared = x * x + y * y + z * z;
+        mMotion.xyAverage = mCurrentXYAcceleration.mMovingAverage;
+        mMotion.zAverage = mCurrentZAcceleration.mMovingAverage;
+
+        for (Gesture gesture : gestures) {
+            gesture.onSample(mMotion);
+        }
+    }
+
+    // Feeds a recorded trace through the registered gestures, samples holds x, y, z per timestamp
+    public void replay(long[] timestamps, float[] samples) {
+        if (samples.length != timestamps.length * 3) {
+            throw new IllegalArgumentException("Expected 3 values per timestamp");
+        }
+        for (int i = 0; i < timestamps.length; i++) {
+            onAccelerometerChanged(timestamps[i],
+                    samples[i * 3], samples[i * 3 + 1], samples[i * 3 + 2]);
+        }
+    }
+
+    private static final class ExponentialMovingAverage {
+        private final float mAlpha;
+        private final float mInitialAverage;
+        private float mMovingAverage;
+
+        ExponentialMovingAverage(float alpha) {
+            this(alpha, 0.0f);
+        }
+
+        ExponentialMovingAverage(float alpha, float initialAverage) {
+            this.mAlpha = alpha;
+            this.mInitialAverage = initialAverage;
+            this.mMovingAverage = initialAverage;
+        }
+
+        void updateMovingAverage(float newValue) {
+            mMovingAverage = newValue + mAlpha * (mMovingAverage - newValue);
+        }
+
+        void reset() {
+            mMovingAverage = this.mInitialAverage;
+        }
+    }
+}
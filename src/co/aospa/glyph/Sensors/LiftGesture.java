@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sensors;
+
+// Device jolted while lying face down, like when it is about to be picked up
+public class LiftGesture extends Gesture {
+
+    private static final float ACCELERATION_THRESHOLD = 10.0f;
+    private static final float Z_FACE_DOWN_THRESHOLD = -5.0f;
+    private static final long COOLDOWN_NANOS = 500_000_000L;
+
+    private boolean mTriggered = false;
+    private long mTriggerTime = 0L;
+
+    @Override
+    public String getName() {
+        return "lift";
+    }
+
+    @Override
+    protected void onSample(GestureEngine.Motion motion) {
+        final boolean jolted = motion.magnitudeSquared > ACCELERATION_THRESHOLD * ACCELERATION_THRESHOLD
+                && motion.z <= Z_FACE_DOWN_THRESHOLD;
+
+        if (jolted && (!mTriggered || motion.timestamp - mTriggerTime > COOLDOWN_NANOS)) {
+            mTriggered = true;
+            mTriggerTime = motion.timestamp;
+            report(true, motion.timestamp);
+        }
+    }
+
+    @Override
+    protected void reset() {
+        mTriggered = false;
+        mTriggerTime = 0L;
+    }
+}
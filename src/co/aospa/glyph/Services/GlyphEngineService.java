@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Services;
+
+import android.Manifest;
+import android.app.Service;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Modules.AutoBrightnessModule;
+import co.aospa.glyph.Modules.CallReceiverModule;
+import co.aospa.glyph.Modules.ChargingModule;
+import co.aospa.glyph.Modules.FlipToGlyphModule;
+import co.aospa.glyph.Modules.GlyphModule;
+import co.aospa.glyph.Modules.MusicVisualizerModule;
+import co.aospa.glyph.Modules.PowershareModule;
+import co.aospa.glyph.Modules.VolumeLevelModule;
+import co.aospa.glyph.Utils.FileUtils;
+import co.aospa.glyph.Utils.FrameRecorder;
+import co.aospa.glyph.Utils.LedSimulator;
+import co.aospa.glyph.Utils.ServiceUtils;
+import co.aospa.glyph.Utils.StartupTrace;
+
+// Hosts every enabled feature as a module on one event loop, frames are drawn on
+// the shared render thread so the thread count does not grow with the features.
+public class GlyphEngineService extends Service {
+
+    private static final String TAG = "GlyphEngineService";
+    private static final boolean DEBUG = true;
+
+    public static final String EXTRA_MODULES = "modules";
+    // Modules whose settings changed, created again even if they are running
+    public static final String EXTRA_RESTART_MODULES = "restart_modules";
+
+    // Debug commands for running without Glyph hardware and for frame traces
+    private static final String ACTION_SIMULATOR = "co.aospa.glyph.action.SIMULATOR";
+    private static final String ACTION_TRACE = "co.aospa.glyph.action.TRACE";
+    private static final String EXTRA_COMMAND = "command";
+    private static final String EXTRA_PATH = "path";
+    private static final String EXTRA_VALUE = "value";
+    private static final String EXTRA_NAME = "name";
+
+    public static final String MODULE_CHARGING = "charging";
+    public static final String MODULE_POWERSHARE = "powershare";
+    public static final String MODULE_CALL = "call";
+    public static final String MODULE_FLIP = "flip";
+    public static final String MODULE_MUSIC_VISUALIZER = "music_visualizer";
+    public static final String MODULE_VOLUME_LEVEL = "volume_level";
+    public static final String MODULE_AUTO_BRIGHTNESS = "auto_brightness";
+
+    // Longest onDestroy() waits for the modules on the engine thread
+    private static final long TEARDOWN_TIMEOUT_MS = 2000;
+
+    private HandlerThread thread;
+    private Handler mHandler;
+
+    private final Map<String, GlyphModule> mModules = new LinkedHashMap<>();
+
+    @Override
+    public void onCreate() {
+        if (DEBUG) Log.d(TAG, "Creating service");
+        // Restarted by the system after a crash, the boot receiver never ran in this process
+        if (Constants.CONTEXT == null) Constants.CONTEXT = getApplicationContext();
+        thread = new HandlerThread("GlyphEngine");
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+        if (Build.IS_DEBUGGABLE) {
+            IntentFilter filter = new IntentFilter(ACTION_SIMULATOR);
+            filter.addAction(ACTION_TRACE);
+            registerReceiver(mDebugReceiver, filter, Manifest.permission.DUMP, mHandler,
+                    Context.RECEIVER_EXPORTED);
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Restarted by the system, the modules are not in the intent anymore
+        String[] modules = intent != null ? intent.getStringArrayExtra(EXTRA_MODULES) : null;
+        if (modules == null) modules = ServiceUtils.getDesiredModules();
+        String[] restart = intent != null ? intent.getStringArrayExtra(EXTRA_RESTART_MODULES) : null;
+        if (restart == null) restart = new String[0];
+        if (DEBUG) Log.d(TAG, "Starting service | modules: " + Arrays.toString(modules)
+                + " | restart: " + Arrays.toString(restart));
+
+        final List<String> enabled = Arrays.asList(modules);
+        final List<String> restarted = Arrays.asList(restart);
+        mHandler.post(() -> {
+            synchronized (mModules) {
+                for (String name : restarted) {
+                    GlyphModule module = mModules.remove(name);
+                    if (module == null) continue;
+                    if (DEBUG) Log.d(TAG, "Destroying module to restart it: " + name);
+                    module.onDestroy();
+                }
+                updateModulesLocked(enabled);
+            }
+        });
+        return START_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (DEBUG) Log.d(TAG, "Destroying service");
+        if (Build.IS_DEBUGGABLE) unregisterReceiver(mDebugReceiver);
+        // Modules unregister from this context, so they are gone before it is, and
+        // whatever they post on the way out is still ahead of the quit
+        if (!mHandler.runWithScissors(() -> updateModules(Arrays.asList()), TEARDOWN_TIMEOUT_MS)) {
+            Log.w(TAG, "Timed out destroying modules");
+        }
+        thread.quitSafely();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    private void updateModules(List<String> enabled) {
+        synchronized (mModules) {
+            updateModulesLocked(enabled);
+        }
+    }
+
+    private void updateModulesLocked(List<String> enabled) {
+        Iterator<Map.Entry<String, GlyphModule>> iterator = mModules.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, GlyphModule> entry = iterator.next();
+            if (enabled.contains(entry.getKey())) continue;
+            if (DEBUG) Log.d(TAG, "Destroying module: " + entry.getKey());
+            entry.getValue().onDestroy();
+            iterator.remove();
+        }
+
+        for (String name : enabled) {
+            GlyphModule module = mModules.get(name);
+            if (module == null) {
+                module = createModule(name);
+                if (module == null) continue;
+                if (DEBUG) Log.d(TAG, "Creating module: " + name);
+                mModules.put(name, module);
+                module.onCreate();
+            }
+            module.onStart();
+            StartupTrace.moduleReady(name);
+        }
+
+        ServiceUtils.onEngineModulesChanged(new ArrayList<>(mModules.keySet()));
+        if (mModules.isEmpty()) stopSelf();
+    }
+
+    private GlyphModule createModule(String name) {
+        switch (name) {
+            case MODULE_CHARGING:
+                return new ChargingModule(this, mHandler);
+            case MODULE_POWERSHARE:
+                return new PowershareModule(this, mHandler);
+            case MODULE_CALL:
+                return new CallReceiverModule(this, mHandler);
+            case MODULE_FLIP:
+                return new FlipToGlyphModule(this, mHandler);
+            case MODULE_MUSIC_VISUALIZER:
+                return new MusicVisualizerModule(this, mHandler);
+            case MODULE_VOLUME_LEVEL:
+                return new VolumeLevelModule(this, mHandler);
+            case MODULE_AUTO_BRIGHTNESS:
+                return new AutoBrightnessModule(this, mHandler);
+            default:
+                Log.w(TAG, "Unknown module: " + name);
+                return null;
+        }
+    }
+
+    // Modules open their nodes when started. They are stopped before the nodes move and
+    // started again after, so none of them writes to the old path in between.
+    private void switchNodes(Runnable change) {
+        synchronized (mModules) {
+            List<String> enabled = new ArrayList<>(mModules.keySet());
+            for (Map.Entry<String, GlyphModule> entry : mModules.entrySet()) {
+                if (DEBUG) Log.d(TAG, "Destroying module to switch nodes: " + entry.getKey());
+                entry.getValue().onDestroy();
+            }
+            mModules.clear();
+            change.run();
+            updateModulesLocked(enabled);
+        }
+    }
+
+    // Debuggable builds only, runs on the engine thread and answers in the result data:
+    // adb shell am broadcast -a co.aospa.glyph.action.SIMULATOR --es command <command>
+    // adb shell am broadcast -a co.aospa.glyph.action.TRACE --es command <command>
+    private final BroadcastReceiver mDebugReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String command = intent.getStringExtra(EXTRA_COMMAND);
+            if (command == null) command = "";
+            switch (intent.getAction()) {
+                case ACTION_SIMULATOR:
+                    setResultData(simulatorCommand(command,
+                            intent.getStringExtra(EXTRA_PATH), intent.getStringExtra(EXTRA_VALUE)));
+                    break;
+                case ACTION_TRACE:
+                    setResultData(traceCommand(command, intent.getStringExtra(EXTRA_NAME)));
+                    break;
+            }
+        }
+    };
+
+    private String simulatorCommand(String command, String path, String value) {
+        try {
+            switch (command) {
+                case "start":
+                    File[] root = new File[1];
+                    switchNodes(() -> {
+                        try {
+                            root[0] = LedSimulator.start(getCacheDir());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    return "Simulating nodes in " + root[0];
+                case "stop":
+                    switchNodes(LedSimulator::stop);
+                    return "Simulator stopped";
+                case "clear":
+                    LedSimulator.clear();
+                    return "Simulator writes cleared";
+                case "node":
+                    if (path == null || value == null) return "Usage: --es path <path> --es value <value>";
+                    LedSimulator.setNode(path, value);
+                    return "Set " + path + " to " + value;
+                default:
+                    return "Usage: --es command start|stop|clear|node";
+            }
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            return "Simulator command failed: " + e;
+        }
+    }
+
+    private String traceCommand(String command, String name) {
+        if (name == null) name = "frames.trace";
+        // Plain names only, traces never leave the cache directory
+        if (name.isEmpty() || name.contains("/") || name.contains("..")) {
+            return "Not a plain trace name: " + name;
+        }
+        File file = new File(getCacheDir(), name);
+        try {
+            switch (command) {
+                case "on":
+                    FrameRecorder.setEnabled(true);
+                    return "Frame trace recording";
+                case "off":
+                    FrameRecorder.setEnabled(false);
+                    return "Frame trace off";
+                case "clear":
+                    FrameRecorder.clear();
+                    return "Frame trace cleared";
+                case "save":
+                    FrameRecorder.save(file);
+                    return "Saved frame trace to " + file;
+                case "replay":
+                    // Frames were recorded after scaling, write them as they are
+                    new Thread(() -> {
+                        try {
+                            FrameRecorder.replay(file, FileUtils.UNRECORDED);
+                        } catch (IOException | InterruptedException e) {
+                            Log.w(TAG, "Could not replay frame trace " + file, e);
+                        }
+                    }, "GlyphTraceReplay").start();
+                    return "Replaying frame trace from " + file;
+                default:
+                    return "Usage: --es command on|off|clear|save|replay [--es name <name>]";
+            }
+        } catch (IOException e) {
+            return "Trace command failed: " + e;
+        }
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        pw.println("GlyphEngineService");
+        synchronized (mModules) {
+            pw.println("  modules: " + mModules.keySet());
+        }
+        pw.println("  skipped transitions: " + ServiceUtils.getSkippedTransitions());
+        StartupTrace.dump(pw);
+        LedSimulator.dump(pw);
+        FrameRecorder.dump(pw);
+    }
+}
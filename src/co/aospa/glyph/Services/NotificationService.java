@@ -19,18 +19,14 @@ package co.aospa.glyph.Services;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.content.ContentResolver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.SharedPreferences;
-import android.database.ContentObserver;
-import android.os.Handler;
 import android.os.IBinder;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import android.preference.PreferenceManager;
-import android.provider.Settings;
 import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
 import android.util.Log;
@@ -43,7 +39,8 @@ import co.aospa.glyph.Manager.SettingsManager;
 import co.aospa.glyph.Manager.StatusManager;
 
 public class NotificationService extends NotificationListenerService
-        implements SharedPreferences.OnSharedPreferenceChangeListener {
+        implements SharedPreferences.OnSharedPreferenceChangeListener,
+        SettingsManager.SecureSettingsListener {
 
     private static final String TAG = "GlyphNotification";
     private static final boolean DEBUG = true;
@@ -52,9 +49,6 @@ public class NotificationService extends NotificationListenerService
     private PowerManager mPowerManager;
     private WakeLock mWakeLock;
 
-    private ContentResolver mContentResolver;
-    private SettingObserver mSettingObserver;
-
     private SharedPreferences mSharedPreferences;
 
     @Override
@@ -64,9 +58,9 @@ public class NotificationService extends NotificationListenerService
         mNotificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
         mPowerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
         mWakeLock = mPowerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, TAG);
-        mContentResolver = getContentResolver();
-        mSettingObserver = new SettingObserver();
-        mSettingObserver.register(mContentResolver);
+        // Bound by the system, possibly before the boot receiver ran in this process
+        if (Constants.CONTEXT == null) Constants.CONTEXT = getApplicationContext();
+        SettingsManager.addSecureSettingsListener(this);
         mSharedPreferences = PreferenceManager.getDefaultSharedPreferences(this);
         mSharedPreferences.registerOnSharedPreferenceChangeListener(this);
         super.onCreate();
@@ -84,7 +78,7 @@ public class NotificationService extends NotificationListenerService
         if (DEBUG) Log.d(TAG, "Destroying service");
         AnimationManager.stopEssential();
         mSharedPreferences.unregisterOnSharedPreferenceChangeListener(this);
-        mSettingObserver.unregister(mContentResolver);
+        SettingsManager.removeSecureSettingsListener(this);
         super.onDestroy();
     }
 
@@ -187,27 +181,9 @@ public class NotificationService extends NotificationListenerService
         }
     }
 
-    private class SettingObserver extends ContentObserver {
-        public SettingObserver() {
-            super(new Handler());
-        }
-
-        public void register(ContentResolver cr) {
-            cr.registerContentObserver(Settings.Secure.getUriFor(
-                Constants.GLYPH_ENABLE), false, this);
-            cr.registerContentObserver(Settings.Secure.getUriFor(
-                Constants.GLYPH_NOTIFS_ENABLE), false, this);
-        }
-
-        public void unregister(ContentResolver cr) {
-            cr.unregisterContentObserver(this);
-        }
-
-        @Override
-        public void onChange(boolean selfChange) {
-            if (DEBUG) Log.d(TAG, "SettingObserver: onChange");
-            onNotificationUpdated();
-            super.onChange(selfChange);
-        }
+    @Override
+    public void onSecureSettingsChanged() {
+        if (DEBUG) Log.d(TAG, "onSecureSettingsChanged");
+        onNotificationUpdated();
     }
 }
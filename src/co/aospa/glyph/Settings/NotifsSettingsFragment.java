@@ -16,8 +16,6 @@
 
 package co.aospa.glyph.Settings;
 
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.os.Handler;
 import android.view.View;
@@ -36,18 +34,18 @@ import com.android.settingslib.widget.MainSwitchPreference;
 import android.widget.CompoundButton;
 import android.widget.CompoundButton.OnCheckedChangeListener;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import co.aospa.glyph.R;
 import co.aospa.glyph.Constants.Constants;
 import co.aospa.glyph.Manager.SettingsManager;
 import co.aospa.glyph.Preference.GlyphAnimationPreference;
+import co.aospa.glyph.Utils.AppListLoader;
 import co.aospa.glyph.Utils.ResourceUtils;
 import co.aospa.glyph.Utils.ServiceUtils;
 
 public class NotifsSettingsFragment extends PreferenceFragment implements OnPreferenceChangeListener,
-        OnCheckedChangeListener {
+        OnCheckedChangeListener, AppListLoader.Callback {
 
     private PreferenceScreen mScreen;
 
@@ -57,7 +55,7 @@ public class NotifsSettingsFragment extends PreferenceFragment implements OnPref
     private List<String> mEssentialApps = new ArrayList<String>();
     private List<String> mEssentialAppsNames = new ArrayList<String>();
 
-    private PackageManager mPackageManager;
+    private AppListLoader mAppListLoader;
 
     private ListPreference mListPreference;
     private MultiSelectListPreference mMultiSelectListPreference;
@@ -89,29 +87,40 @@ public class NotifsSettingsFragment extends PreferenceFragment implements OnPref
 
         mGlyphAnimationPreference = (GlyphAnimationPreference) findPreference(Constants.GLYPH_NOTIFS_SUB_PREVIEW);
 
-        mPackageManager = getActivity().getPackageManager();
-        List<ApplicationInfo> mApps = mPackageManager.getInstalledApplications(PackageManager.GET_GIDS);
-        Collections.sort(mApps, new ApplicationInfo.DisplayNameComparator(mPackageManager));
-        for (ApplicationInfo app : mApps) {
-            if(mPackageManager.getLaunchIntentForPackage(app.packageName) != null  && !ArrayUtils.contains(Constants.APPS_TO_IGNORE, app.packageName)) { // apps with launcher intent
-                SwitchPreferenceCompat mSwitchPreference = new SwitchPreferenceCompat(mScreen.getContext());
-                mSwitchPreference.setKey(app.packageName);
-                mSwitchPreference.setTitle(" " + app.loadLabel(mPackageManager).toString()); // add this space since the layout looks off otherwise
-                mSwitchPreference.setIcon(app.loadIcon(mPackageManager));
-                mSwitchPreference.setDefaultValue(true);
-                mSwitchPreference.setOnPreferenceChangeListener(this);
-                mCategory.addPreference(mSwitchPreference);
-
-                mEssentialApps.add(app.packageName);
-                mEssentialAppsNames.add(app.loadLabel(mPackageManager).toString());
-            }
-        }
-
         mMultiSelectListPreference = (MultiSelectListPreference) findPreference(Constants.GLYPH_NOTIFS_SUB_ESSENTIAL);
         mMultiSelectListPreference.setOnPreferenceChangeListener(this);
+
+        // The screen shows right away, apps are appended as they are loaded
+        mAppListLoader = new AppListLoader(getActivity().getPackageManager(), this);
+        mAppListLoader.start();
+    }
+
+    @Override
+    public void onAppsLoaded(List<AppListLoader.App> apps) {
+        for (AppListLoader.App app : apps) {
+            SwitchPreferenceCompat mSwitchPreference = new SwitchPreferenceCompat(mScreen.getContext());
+            mSwitchPreference.setKey(app.packageName);
+            mSwitchPreference.setTitle(" " + app.label); // add this space since the layout looks off otherwise
+            mSwitchPreference.setIcon(app.getIcon());
+            mSwitchPreference.setDefaultValue(true);
+            mSwitchPreference.setOnPreferenceChangeListener(this);
+            mCategory.addPreference(mSwitchPreference);
+
+            mEssentialApps.add(app.packageName);
+            mEssentialAppsNames.add(app.label);
+        }
+    }
+
+    @Override
+    public void onLoadFinished(List<AppListLoader.App> apps) {
         mMultiSelectListPreference.setEntries(mEssentialAppsNames.toArray(new CharSequence[0]));
         mMultiSelectListPreference.setEntryValues(mEssentialApps.toArray(new CharSequence[0]));
+    }
 
+    @Override
+    public void onDestroy() {
+        if (mAppListLoader != null) mAppListLoader.cancel();
+        super.onDestroy();
     }
 
     @Override
@@ -18,12 +18,8 @@
 
 package co.aospa.glyph.Settings;
 
-import android.content.ContentResolver;
-import android.database.ContentObserver;
-import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
-import android.provider.Settings;
 
 import androidx.preference.Preference;
 import androidx.preference.Preference.OnPreferenceChangeListener;
@@ -45,7 +41,7 @@ import co.aospa.glyph.Utils.ResourceUtils;
 import co.aospa.glyph.Utils.ServiceUtils;
 
 public class SettingsFragment extends PreferenceFragment implements OnPreferenceChangeListener,
-        OnCheckedChangeListener {
+        OnCheckedChangeListener, SettingsManager.SecureSettingsListener {
 
     private MainSwitchPreference mSwitchBar;
 
@@ -55,22 +51,18 @@ public class SettingsFragment extends PreferenceFragment implements OnPreference
     private PrimarySwitchPreference mNotifsPreference;
     private PrimarySwitchPreference mCallPreference;
     private SwitchPreferenceCompat mChargingLevelPreference;
+    private SwitchPreferenceCompat mChargingRatePreference;
     private SwitchPreferenceCompat mChargingPowersharePreference;
     private SwitchPreferenceCompat mVolumeLevelPreference;
     private SwitchPreferenceCompat mMusicVisualizerPreference;
 
-    private ContentResolver mContentResolver;
-    private SettingObserver mSettingObserver;
-
     private Handler mHandler = new Handler();
 
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
         addPreferencesFromResource(R.xml.glyph_settings);
 
-        mContentResolver = getActivity().getContentResolver();
-        mSettingObserver = new SettingObserver();
-        mSettingObserver.register(mContentResolver);
+        SettingsManager.addSecureSettingsListener(this);
 
         boolean glyphEnabled = SettingsManager.isGlyphEnabled();
 
@@ -118,6 +110,10 @@ public class SettingsFragment extends PreferenceFragment implements OnPreference
         mChargingLevelPreference.setEnabled(glyphEnabled);
         mChargingLevelPreference.setOnPreferenceChangeListener(this);
 
+        mChargingRatePreference = (SwitchPreferenceCompat) findPreference(Constants.GLYPH_CHARGING_RATE_ENABLE);
+        mChargingRatePreference.setEnabled(glyphEnabled && mChargingLevelPreference.isChecked());
+        mChargingRatePreference.setOnPreferenceChangeListener(this);
+
         mChargingPowersharePreference = (SwitchPreferenceCompat) findPreference(Constants.GLYPH_CHARGING_POWERSHARE_ENABLE);
         mChargingPowersharePreference.setEnabled(glyphEnabled);
         mChargingPowersharePreference.setOnPreferenceChangeListener(this);
@@ -168,6 +164,7 @@ public class SettingsFragment extends PreferenceFragment implements OnPreference
         mCallPreference.setEnabled(isChecked);
         mCallPreference.setSwitchEnabled(isChecked);
         mChargingLevelPreference.setEnabled(isChecked);
+        mChargingRatePreference.setEnabled(isChecked && mChargingLevelPreference.isChecked());
         mChargingPowersharePreference.setEnabled(isChecked);
         mVolumeLevelPreference.setEnabled(isChecked);
         mMusicVisualizerPreference.setEnabled(isChecked);
@@ -177,40 +174,16 @@ public class SettingsFragment extends PreferenceFragment implements OnPreference
 
     @Override
     public void onDestroy() {
-        mSettingObserver.unregister(mContentResolver);
+        SettingsManager.removeSecureSettingsListener(this);
         super.onDestroy();
     }
 
-    private class SettingObserver extends ContentObserver {
-        public SettingObserver() {
-            super(new Handler());
-        }
-
-        public void register(ContentResolver cr) {
-            cr.registerContentObserver(Settings.Secure.getUriFor(
-                Constants.GLYPH_ENABLE), false, this);
-            cr.registerContentObserver(Settings.Secure.getUriFor(
-                Constants.GLYPH_CALL_ENABLE), false, this);
-            cr.registerContentObserver(Settings.Secure.getUriFor(
-                Constants.GLYPH_NOTIFS_ENABLE), false, this);
-        }
-
-        public void unregister(ContentResolver cr) {
-            cr.unregisterContentObserver(this);
-        }
-
-        @Override
-        public void onChange(boolean selfChange, Uri uri) {
-            super.onChange(selfChange, uri);
-            if (uri.equals(Settings.Secure.getUriFor(Constants.GLYPH_ENABLE))) {
-                mSwitchBar.setChecked(SettingsManager.isGlyphEnabled());
-            }
-            if (uri.equals(Settings.Secure.getUriFor(Constants.GLYPH_CALL_ENABLE))) {
-                mCallPreference.setChecked(SettingsManager.isGlyphCallEnabled());
-            }
-            if (uri.equals(Settings.Secure.getUriFor(Constants.GLYPH_NOTIFS_ENABLE))) {
-                mNotifsPreference.setChecked(SettingsManager.isGlyphNotifsEnabled());
-            }
-        }
+    // Changed outside of this screen, the quick settings tile or another user of the settings
+    @Override
+    public void onSecureSettingsChanged() {
+        boolean glyphEnabled = SettingsManager.isGlyphEnabled();
+        if (mSwitchBar.isChecked() != glyphEnabled) mSwitchBar.setChecked(glyphEnabled);
+        mCallPreference.setChecked(SettingsManager.isGlyphCallEnabled());
+        mNotifsPreference.setChecked(SettingsManager.isGlyphNotifsEnabled());
     }
 }
@@ -19,12 +19,7 @@
 package co.aospa.glyph.Tiles;
 
 import android.content.ComponentName;
-import android.content.ContentResolver;
 import android.content.SharedPreferences; 
-import android.database.ContentObserver;
-import android.net.Uri;
-import android.os.Handler;
-import android.provider.Settings;
 import android.service.quicksettings.Tile;
 import android.service.quicksettings.TileService;
 
@@ -36,16 +31,14 @@ import co.aospa.glyph.Manager.SettingsManager;
 import co.aospa.glyph.Utils.ServiceUtils;
 
 /** Quick settings tile: Glyph **/
-public class MusicVisualizerTileService extends TileService {
-
-    private ContentResolver mContentResolver;
-    private SettingObserver mSettingObserver;
+public class MusicVisualizerTileService extends TileService
+        implements SettingsManager.SecureSettingsListener {
 
     @Override
     public void onCreate() {
-        mContentResolver = this.getContentResolver();
-        mSettingObserver = new SettingObserver();
-        mSettingObserver.register(mContentResolver);
+        // Bound by the system, possibly before the boot receiver ran in this process
+        if (Constants.CONTEXT == null) Constants.CONTEXT = getApplicationContext();
+        SettingsManager.addSecureSettingsListener(this);
     }
 
     @Override
@@ -90,30 +83,12 @@ public class MusicVisualizerTileService extends TileService {
 
     @Override
     public void onDestroy() {
-        mSettingObserver.unregister(mContentResolver);
+        SettingsManager.removeSecureSettingsListener(this);
         super.onDestroy();
     }
     
-    private class SettingObserver extends ContentObserver {
-        public SettingObserver() {
-            super(new Handler());
-        }
-
-        public void register(ContentResolver cr) {
-            cr.registerContentObserver(Settings.Secure.getUriFor(
-                Constants.GLYPH_ENABLE), false, this);
-        }
-
-        public void unregister(ContentResolver cr) {
-            cr.unregisterContentObserver(this);
-        }
-
-        @Override
-        public void onChange(boolean selfChange, Uri uri) {
-            super.onChange(selfChange, uri);
-            if (uri.equals(Settings.Secure.getUriFor(Constants.GLYPH_ENABLE))) {
-                updateState();
-            }
-        }
+    @Override
+    public void onSecureSettingsChanged() {
+        updateState();
     }
 }
@@ -23,9 +23,9 @@ import android.service.quicksettings.TileService;
 
 import co.aospa.glyph.R;
 import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.DeviceProfile;
 import co.aospa.glyph.Manager.StatusManager;
 import co.aospa.glyph.Utils.FileUtils;
-import co.aospa.glyph.Utils.ResourceUtils;
 
 /** Quick settings tile: Glyph **/
 public class TorchTileService extends TileService {
@@ -61,7 +61,7 @@ public class TorchTileService extends TileService {
         FileUtils.writeAllLed(enabled ? Constants.getMaxBrightness() : 0);
         if (StatusManager.isEssentialLedActive() && !enabled)
             FileUtils.writeSingleLed(
-                ResourceUtils.getInteger("glyph_settings_notifs_essential_led"),
+                DeviceProfile.get().getEssentialLed(),
                 Constants.getMaxBrightness( )/ 100 * 7);
     }
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import co.aospa.glyph.Constants.DeviceProfile;
+import co.aospa.glyph.Constants.GlyphDevice;
+
+// An animation CSV decoded once into a flat array of frames, one line per frame.
+// Lines are remapped to the device zones while decoding, so a timeline always
+// holds full device frames whatever phone the animation was made for. Compiled
+// timelines are also kept on disk and mapped back in by later processes.
+// Animations shipping as keyframes are sampled into the same frames instead.
+public final class AnimationTimeline implements GlyphAnimation {
+
+    private static final String TAG = "GlyphAnimationTimeline";
+    private static final boolean DEBUG = true;
+
+    public static final long FRAME_INTERVAL_NANOS = 16_666_667L;
+
+    // Frames kept across all cached timelines, in zone values
+    private static final int CACHE_SIZE = 256 * 1024;
+
+    private static final LruCache<String, AnimationTimeline> cache =
+            new LruCache<String, AnimationTimeline>(CACHE_SIZE) {
+        @Override
+        protected int sizeOf(String name, AnimationTimeline timeline) {
+            return Math.max(timeline.mFrames.capacity(), 1);
+        }
+    };
+
+    private final String mName;
+    private final int mSourceLength;
+    private final int mFrameLength;
+    private final int mFrameCount;
+    // Heap buffer when just decoded, mapped file when loaded from the disk cache.
+    // Only absolute reads are used, so it can be shared between threads.
+    private final ShortBuffer mFrames;
+
+    AnimationTimeline(String name, int sourceLength, int frameLength, int frameCount,
+            ShortBuffer frames) {
+        mName = name;
+        mSourceLength = sourceLength;
+        mFrameLength = frameLength;
+        mFrameCount = frameCount;
+        mFrames = frames;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    // Zones in every frame, the full frame of the device
+    @Override
+    public int getFrameLength() {
+        return mFrameLength;
+    }
+
+    // Length of the CSV lines the timeline was decoded from
+    public int getSourceLength() {
+        return mSourceLength;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getDurationNanos() {
+        return mFrameCount * FRAME_INTERVAL_NANOS;
+    }
+
+    // Brightness of a zone, 0 - Constants.MAX_PATTERN_BRIGHTNESS
+    public int getValue(int frame, int zone) {
+        return mFrames.get(frame * mFrameLength + zone);
+    }
+
+    @Override
+    public void copyFrame(int frame, int[] out) {
+        int offset = frame * mFrameLength;
+        for (int i = 0; i < mFrameLength; i++) {
+            out[i] = mFrames.get(offset + i);
+        }
+    }
+
+    // Returns null when the asset doesn't exist, holds no frame or can't be shown
+    public static AnimationTimeline get(String name) {
+        return get(name, false);
+    }
+
+    // Only what is already decoded in memory, never touches the disk. Null otherwise.
+    public static AnimationTimeline getCached(String name) {
+        return name != null ? cache.get(name) : null;
+    }
+
+    // Call animations fall back to the default one
+    public static AnimationTimeline getCall(String name) {
+        return get(name, true);
+    }
+
+    private static AnimationTimeline get(String name, boolean call) {
+        if (name == null) return null;
+        String key = call ? "call/" + name : name;
+        AnimationTimeline timeline = cache.get(key);
+        if (timeline != null) return timeline;
+
+        timeline = TimelineCache.load(name, key);
+        if (timeline == null) {
+            timeline = decode(name, call);
+            if (timeline != null) TimelineCache.store(key, timeline);
+        }
+        if (timeline != null) cache.put(key, timeline);
+        return timeline;
+    }
+
+    private static AnimationTimeline decode(String name, boolean call) {
+        InputStream keyframes = ResourceUtils.getKeyframes(name, call);
+        if (keyframes != null) return decodeKeyframes(name, keyframes);
+
+        long start = System.nanoTime();
+        GlyphDevice device = DeviceProfile.get();
+        int frameLength = device.getFrameLength();
+        short[] frames = new short[frameLength * 64];
+        int[] line = null;
+        int[] gather = null;
+        int frameCount = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                call ? ResourceUtils.getCallAnimation(name) : ResourceUtils.getAnimation(name)))) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                text = text.replace(" ", "");
+                text = text.endsWith(",") ? text.substring(0, text.length() - 1) : text;
+                if (text.isEmpty()) continue;
+                String[] split = text.split(",");
+                if (gather == null) {
+                    // The first line decides which device the animation was made for
+                    gather = device.getZoneMap(split.length);
+                    if (gather == null) {
+                        if (DEBUG) Log.d(TAG, "No zone map for animation | name: " + name
+                                + " | zones: " + split.length);
+                        return null;
+                    }
+                    line = new int[split.length];
+                }
+                if (split.length != line.length) {
+                    if (DEBUG) Log.d(TAG, "Animation line length mismatch | name: " + name + " | line: " + text);
+                    break;
+                }
+                for (int i = 0; i < line.length; i++) {
+                    line[i] = Integer.parseInt(split[i]);
+                }
+
+                int offset = frameCount * frameLength;
+                if (offset + frameLength > frames.length) {
+                    frames = Arrays.copyOf(frames, frames.length * 2);
+                }
+                // One pass over the gather index, no per zone branches
+                for (int i = 0; i < frameLength; i++) {
+                    frames[offset + i] = (short) line[gather[i]];
+                }
+                frameCount++;
+            }
+        } catch (IOException | NumberFormatException e) {
+            if (DEBUG) Log.d(TAG, "Exception while decoding animation | name: " + name + " | exception: " + e);
+        }
+
+        if (frameCount == 0) return null;
+        if (DEBUG) Log.d(TAG, "Decoded animation | name: " + name + " | frames: " + frameCount
+                + " | zones: " + line.length + " -> " + frameLength
+                + " | took: " + (System.nanoTime() - start) / 1000 + "us");
+        return new AnimationTimeline(name, line.length, frameLength, frameCount,
+                ShortBuffer.wrap(Arrays.copyOf(frames, frameCount * frameLength)));
+    }
+
+    private static AnimationTimeline decodeKeyframes(String name, InputStream input) {
+        long start = System.nanoTime();
+        GlyphDevice device = DeviceProfile.get();
+        int frameLength = device.getFrameLength();
+
+        KeyframeAnimation keyframes;
+        try (InputStreamReader reader = new InputStreamReader(input)) {
+            keyframes = KeyframeAnimation.parse(name, reader);
+        } catch (IOException e) {
+            if (DEBUG) Log.d(TAG, "Exception while decoding keyframes | name: " + name + " | exception: " + e);
+            return null;
+        }
+
+        int[] gather = device.getZoneMap(keyframes.getFrameLength());
+        if (gather == null) {
+            if (DEBUG) Log.d(TAG, "No zone map for animation | name: " + name
+                    + " | zones: " + keyframes.getFrameLength());
+            return null;
+        }
+
+        // Sampled at the 60 fps of the players whatever rate the keyframes were made at,
+        // the frame count covers the same duration
+        long duration = keyframes.getFrameCount() * 1_000_000_000L / keyframes.getRate();
+        int frameCount = (int) ((duration + FRAME_INTERVAL_NANOS - 1) / FRAME_INTERVAL_NANOS);
+        int[] line = new int[keyframes.getFrameLength()];
+        short[] frames = new short[frameCount * frameLength];
+        for (int f = 0; f < frameCount; f++) {
+            keyframes.copyFrameAt(f * FRAME_INTERVAL_NANOS, line);
+            int offset = f * frameLength;
+            for (int i = 0; i < frameLength; i++) {
+                frames[offset + i] = (short) line[gather[i]];
+            }
+        }
+
+        if (frameCount == 0) return null;
+        if (DEBUG) Log.d(TAG, "Sampled keyframes | name: " + name + " | keyframes: "
+                + keyframes.getKeyframeCount() + " | frames: " + frameCount
+                + " | took: " + (System.nanoTime() - start) / 1000 + "us");
+        return new AnimationTimeline(name, line.length, frameLength, frameCount,
+                ShortBuffer.wrap(frames));
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.android.internal.util.ArrayUtils;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import co.aospa.glyph.Constants.Constants;
+
+// Loads the launchable apps off the UI thread. Labels are loaded in parallel and
+// sorted first, icons are then loaded one page at a time and every page is handed
+// to the UI thread as soon as it is ready. Both are cached per package until the
+// package is updated or removed, so reopening the list only queries the package
+// manager. Icons are cached as constant states, every view gets its own drawable.
+// The process is persistent, so the cache is bounded and the threads time out.
+public final class AppListLoader {
+
+    private static final String TAG = "GlyphAppListLoader";
+    private static final boolean DEBUG = true;
+
+    private static final int PAGE_SIZE = 24;
+
+    // Apps with their label and icon kept, the least recently listed go first
+    private static final int CACHE_SIZE = 128;
+    private static final long THREAD_TIMEOUT_SECONDS = 30;
+
+    public static final class App {
+        public final String packageName;
+        public final String label;
+        public final long lastUpdateTime;
+        private final ApplicationInfo info;
+        private volatile Drawable.ConstantState iconState;
+        // Only for the rare drawable without a constant state, loaded again every time
+        private volatile Drawable icon;
+
+        private App(PackageInfo packageInfo, String label) {
+            packageName = packageInfo.packageName;
+            lastUpdateTime = packageInfo.lastUpdateTime;
+            info = packageInfo.applicationInfo;
+            this.label = label;
+        }
+
+        // A new drawable on every call, bounds and callbacks are never shared between views
+        public Drawable getIcon() {
+            Drawable.ConstantState state = iconState;
+            return state != null ? state.newDrawable() : icon;
+        }
+    }
+
+    public interface Callback {
+        // Next apps in label order, on the UI thread
+        void onAppsLoaded(List<App> apps);
+
+        // Every app has been delivered, on the UI thread
+        void onLoadFinished(List<App> apps);
+    }
+
+    private static final LruCache<String, App> cache = new LruCache<>(CACHE_SIZE);
+
+    // One thread walks the list, the labels and icons are spread over the others
+    private static final ExecutorService executor = newPool(1, "GlyphAppListLoader");
+    private static final ExecutorService workers = newPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() - 1), "GlyphAppListWorker");
+
+    // Threads only live while the list is being loaded
+    private static ExecutorService newPool(int threads, String name) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private final PackageManager mPackageManager;
+    private final Callback mCallback;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean mCancelled;
+
+    public AppListLoader(PackageManager packageManager, Callback callback) {
+        mPackageManager = packageManager;
+        mCallback = callback;
+    }
+
+    public void start() {
+        executor.execute(this::load);
+    }
+
+    // Nothing is delivered after this, pages already being loaded are dropped
+    public void cancel() {
+        mCancelled = true;
+        mHandler.removeCallbacksAndMessages(null);
+    }
+
+    private void load() {
+        long start = System.nanoTime();
+
+        // One query for every launcher activity instead of a launch intent lookup per app
+        Intent launcher = new Intent(Intent.ACTION_MAIN).addCategory(Intent.CATEGORY_LAUNCHER);
+        HashSet<String> launchable = new HashSet<>();
+        for (ResolveInfo info : mPackageManager.queryIntentActivities(launcher, 0)) {
+            launchable.add(info.activityInfo.packageName);
+        }
+
+        ArrayList<Callable<App>> labels = new ArrayList<>();
+        HashSet<String> listed = new HashSet<>();
+        for (PackageInfo info : mPackageManager.getInstalledPackages(0)) {
+            if (info.applicationInfo == null || !launchable.contains(info.packageName)
+                    || ArrayUtils.contains(Constants.APPS_TO_IGNORE, info.packageName)) continue;
+            listed.add(info.packageName);
+            labels.add(() -> getApp(info));
+        }
+        // Uninstalled apps, and apps that lost their launcher entry, leave the cache
+        for (String packageName : cache.snapshot().keySet()) {
+            if (!listed.contains(packageName)) cache.remove(packageName);
+        }
+        if (mCancelled) return;
+
+        List<App> apps = new ArrayList<>();
+        for (Future<App> future : invokeAll(labels)) {
+            try {
+                apps.add(future.get());
+            } catch (Exception e) {
+                if (DEBUG) Log.d(TAG, "Exception while loading app label | exception: " + e);
+            }
+        }
+        Collator collator = Collator.getInstance();
+        Collections.sort(apps, (a, b) -> collator.compare(a.label, b.label));
+        if (DEBUG) Log.d(TAG, "Loaded app labels | apps: " + apps.size()
+                + " | took: " + (System.nanoTime() - start) / 1000000 + "ms");
+
+        for (int from = 0; from < apps.size() && !mCancelled; from += PAGE_SIZE) {
+            List<App> page = apps.subList(from, Math.min(from + PAGE_SIZE, apps.size()));
+            ArrayList<Callable<App>> icons = new ArrayList<>();
+            for (App app : page) {
+                icons.add(() -> loadIcon(app));
+            }
+            invokeAll(icons);
+            deliver(() -> mCallback.onAppsLoaded(page));
+        }
+
+        deliver(() -> mCallback.onLoadFinished(apps));
+        if (DEBUG) Log.d(TAG, "Loaded app list | apps: " + apps.size()
+                + " | took: " + (System.nanoTime() - start) / 1000000 + "ms");
+    }
+
+    private List<Future<App>> invokeAll(List<Callable<App>> tasks) {
+        try {
+            return workers.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            mCancelled = true;
+            return new ArrayList<>();
+        }
+    }
+
+    private void deliver(Runnable runnable) {
+        mHandler.post(() -> {
+            if (!mCancelled) runnable.run();
+        });
+    }
+
+    // Cached entry unless the package was updated since it was loaded
+    private App getApp(PackageInfo info) {
+        App app = cache.get(info.packageName);
+        if (app != null && app.lastUpdateTime == info.lastUpdateTime) return app;
+        app = new App(info, info.applicationInfo.loadLabel(mPackageManager).toString());
+        cache.put(info.packageName, app);
+        return app;
+    }
+
+    private App loadIcon(App app) {
+        if (app.iconState == null) {
+            Drawable icon = app.info.loadIcon(mPackageManager);
+            Drawable.ConstantState state = icon.getConstantState();
+            if (state != null) {
+                app.iconState = state;
+                app.icon = null;
+            } else {
+                app.icon = icon;
+            }
+        }
+        return app;
+    }
+}
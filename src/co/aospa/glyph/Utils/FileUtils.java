@@ -18,66 +18,42 @@ package co.aospa.glyph.Utils;
 
 import android.util.Log;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Arrays;
 
-import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.DeviceProfile;
 
 public final class FileUtils {
 
     private static final String TAG = "GlyphFileUtils";
     private static final boolean DEBUG = true;
 
+    // Reads go through the node watcher, which keeps the descriptor open between reads
     public static String readLine(String fileName) {
-        String line = null;
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(new FileReader(fileName), 512);
-            line = reader.readLine();
-        } catch (FileNotFoundException e) {
-            Log.w(TAG, "No such file " + fileName + " for reading", e);
-        } catch (IOException e) {
-            Log.e(TAG, "Could not read from file " + fileName, e);
-        } finally {
-            try {
-                if (reader != null) {
-                    reader.close();
-                }
-            } catch (IOException e) { }
-        }
-        return line;
+        return NodeWatcher.readLine(fileName);
     }
 
     public static int readLineInt(String fileName) {
-        String line = readLine(fileName);
-        if (line == null) {
-            return 0;
-        }
-        try {
-            return Integer.parseInt(line.replace("0x", ""));
-        } catch (NumberFormatException e) {
-            Log.e(TAG, "Could not convert string to int from file " + fileName, e);
-        }
-        return 0;
+        return NodeWatcher.readInt(fileName);
     }
 
     public static void writeLine(String fileName, String value) {
-        String modePath = ResourceUtils.getString("glyph_settings_paths_mode_absolute");
+        String modePath = DeviceProfile.get().getModePath();
         BufferedWriter writerMode = null;
         BufferedWriter writerValue = null;
         try {
             if (!modePath.isBlank()) {
-                writerMode = new BufferedWriter(new FileWriter(modePath));
+                writerMode = new BufferedWriter(new FileWriter(LedSimulator.redirect(modePath)));
                 writerMode.write("1");
+                LedSimulator.onWrite(modePath, "1");
             }
-            writerValue = new BufferedWriter(new FileWriter(fileName));
+            writerValue = new BufferedWriter(new FileWriter(LedSimulator.redirect(fileName)));
             writerValue.write(value);
+            LedSimulator.onWrite(fileName, value);
         } catch (FileNotFoundException e) {
             Log.w(TAG, "No such file " + fileName + " for writing", e);
         } catch (IOException e) {
@@ -105,7 +81,8 @@ public final class FileUtils {
     }
 
     public static void writeAllLed(String value) {
-        writeLine(ResourceUtils.getString("glyph_settings_paths_all_absolute"), value);
+        FrameRecorder.recordAll(parseValue(value));
+        writeLine(DeviceProfile.get().getAllPath(), value);
     }
 
     public static void writeAllLed(int value) {
@@ -117,11 +94,16 @@ public final class FileUtils {
     }
 
     public static void writeFrameLed(String value) {
-        writeLine(ResourceUtils.getString("glyph_settings_paths_frame_absolute"), value);
+        writeLine(DeviceProfile.get().getFramePath(), value);
     }
 
     public static void writeFrameLed(int[] value) {
-        writeFrameLed(Arrays.toString(value).replaceAll("\\[|\\]", "").replace(", ", " "));
+        FrameRecorder.record(value);
+        writeFrameLed(formatFrame(value));
+    }
+
+    private static String formatFrame(int[] value) {
+        return Arrays.toString(value).replaceAll("\\[|\\]", "").replace(", ", " ");
     }
 
     public static void writeFrameLed(float[] value) {
@@ -133,7 +115,8 @@ public final class FileUtils {
     }
 
     public static void writeSingleLed(String led, String value) {
-        writeLine(ResourceUtils.getString("glyph_settings_paths_single_absolute"), led + " " + value);
+        FrameRecorder.recordSingle(parseValue(led), parseValue(value));
+        writeLine(DeviceProfile.get().getSinglePath(), led + " " + value);
     }
 
     public static void writeSingleLed(int led, String value) {
@@ -148,7 +131,38 @@ public final class FileUtils {
         writeSingleLed(led, Integer.toString(Math.round(value)));
     }
 
+    public static void writeSingleLed(int led, int value) {
+        writeSingleLed(Integer.toString(led), Integer.toString(value));
+    }
+
     public static void writeSingleLed(int led, float value) {
         writeSingleLed(Integer.toString(led), Integer.toString(Math.round(value)));
     }
+
+    // Numbers only end up in the frame trace, anything else as -1
+    private static int parseValue(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Writes a replayed trace back to the nodes without recording it again
+    public static final FrameRecorder.Sink UNRECORDED = new FrameRecorder.Sink() {
+        @Override
+        public void onFrame(int[] frame) {
+            writeFrameLed(formatFrame(frame));
+        }
+
+        @Override
+        public void onAll(int value) {
+            writeLine(DeviceProfile.get().getAllPath(), value);
+        }
+
+        @Override
+        public void onSingle(int led, int value) {
+            writeLine(DeviceProfile.get().getSinglePath(), led + " " + value);
+        }
+    };
 }
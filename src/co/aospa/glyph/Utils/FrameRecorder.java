@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import co.aospa.glyph.Constants.DeviceProfile;
+
+// Keeps the last writes to the LEDs in a fixed ring buffer, so a stutter reported
+// from the field can be looked at afterwards. Frames, all LED and single LED writes
+// are kept in order. Recording copies into preallocated arrays only, it never
+// allocates and its memory never grows.
+public final class FrameRecorder {
+
+    private static final String TAG = "GlyphFrameRecorder";
+    private static final boolean DEBUG = true;
+
+    // About 17 seconds of continuous animation
+    private static final int CAPACITY = 1024;
+
+    private static final int MAGIC = 0x474c4654; // GLFT
+    private static final int FORMAT = 2;
+
+    private static final byte KIND_FRAME = 0;
+    // One value for every LED
+    private static final byte KIND_ALL = 1;
+    // LED index and its value
+    private static final byte KIND_SINGLE = 2;
+
+    // Frames further apart than this while animating count as a stutter
+    private static final long STUTTER_NANOS = 2 * AnimationTimeline.FRAME_INTERVAL_NANOS;
+    // Anything longer is a pause between animations
+    private static final long IDLE_NANOS = 500_000_000L;
+
+    public interface Sink {
+        void onFrame(int[] frame);
+
+        void onAll(int value);
+
+        void onSingle(int led, int value);
+    }
+
+    private static volatile boolean enabled = true;
+
+    // Allocated with the first entry, sized for the longest frame of the device
+    private static int zones = 0;
+    private static long[] times;
+    private static byte[] kinds;
+    private static byte[] lengths;
+    private static short[] values;
+    private static int head = 0;
+    private static int count = 0;
+
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void record(int[] frame) {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        synchronized (FrameRecorder.class) {
+            int offset = next(now, KIND_FRAME, Math.min(frame.length, allocate()));
+            for (int i = 0; i < lengths[head]; i++) {
+                values[offset + i] = (short) frame[i];
+            }
+            advance();
+        }
+    }
+
+    static void recordAll(int value) {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        synchronized (FrameRecorder.class) {
+            int offset = next(now, KIND_ALL, 1);
+            values[offset] = (short) value;
+            advance();
+        }
+    }
+
+    static void recordSingle(int led, int value) {
+        if (!enabled) return;
+        long now = System.nanoTime();
+        synchronized (FrameRecorder.class) {
+            int offset = next(now, KIND_SINGLE, 2);
+            values[offset] = (short) led;
+            values[offset + 1] = (short) value;
+            advance();
+        }
+    }
+
+    // Longest entry of the device, a frame, never less than a single LED write
+    private static int allocate() {
+        if (times == null) {
+            zones = Math.max(DeviceProfile.get().getFrameLength(), 2);
+            times = new long[CAPACITY];
+            kinds = new byte[CAPACITY];
+            lengths = new byte[CAPACITY];
+            values = new short[CAPACITY * zones];
+        }
+        return zones;
+    }
+
+    // Fills in the head entry and returns where its values go
+    private static int next(long time, byte kind, int length) {
+        allocate();
+        times[head] = time;
+        kinds[head] = kind;
+        lengths[head] = (byte) length;
+        return head * zones;
+    }
+
+    private static void advance() {
+        head = (head + 1) % CAPACITY;
+        if (count < CAPACITY) count++;
+    }
+
+    public static synchronized void clear() {
+        head = 0;
+        count = 0;
+    }
+
+    // Oldest entry first: magic, format, zones, count, then time, kind, length and values per entry
+    public static synchronized void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeInt(zones);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                int index = (head - count + i + CAPACITY) % CAPACITY;
+                out.writeLong(times[index]);
+                out.writeByte(kinds[index]);
+                out.writeByte(lengths[index]);
+                for (int j = 0; j < lengths[index]; j++) {
+                    out.writeShort(values[index * zones + j]);
+                }
+            }
+        }
+        if (DEBUG) Log.d(TAG, "Saved frame trace | file: " + file + " | entries: " + count);
+    }
+
+    // Feeds a saved trace to the sink with its original timing, on the calling thread.
+    // The sink should write without recording, see FileUtils.UNRECORDED.
+    public static void replay(File file, Sink sink) throws IOException, InterruptedException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("Not a frame trace: " + file);
+            }
+            int traceZones = in.readInt();
+            int traceCount = in.readInt();
+            int[][] frames = new int[traceZones + 1][];
+
+            long first = -1;
+            long start = System.nanoTime();
+            for (int i = 0; i < traceCount; i++) {
+                long time = in.readLong();
+                int kind = in.readUnsignedByte();
+                int length = in.readUnsignedByte();
+                if (length > traceZones || kind > KIND_SINGLE
+                        || (kind == KIND_ALL && length != 1) || (kind == KIND_SINGLE && length != 2)) {
+                    throw new IOException("Corrupt frame trace: " + file);
+                }
+                if (frames[length] == null) frames[length] = new int[length];
+                int[] frame = frames[length];
+                for (int j = 0; j < length; j++) {
+                    frame[j] = in.readShort();
+                }
+
+                if (first == -1) first = time;
+                // Long pauses are replayed as they were, the trace is about timing
+                long delay = (time - first) - (System.nanoTime() - start);
+                if (delay > 0) Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+                switch (kind) {
+                    case KIND_ALL:
+                        sink.onAll(frame[0]);
+                        break;
+                    case KIND_SINGLE:
+                        sink.onSingle(frame[0], frame[1]);
+                        break;
+                    default:
+                        sink.onFrame(frame);
+                }
+            }
+            if (DEBUG) Log.d(TAG, "Replayed frame trace | file: " + file + " | entries: " + traceCount);
+        }
+    }
+
+    public static synchronized void dump(PrintWriter pw) {
+        pw.println("  frame trace: " + (enabled ? "recording" : "off") + " | entries: " + count
+                + "/" + CAPACITY);
+        if (count < 2) return;
+
+        long maxInterval = 0;
+        int stutters = 0, frames = 0, all = 0, single = 0;
+        long previous = -1;
+        for (int i = 0; i < count; i++) {
+            int index = (head - count + i + CAPACITY) % CAPACITY;
+            if (kinds[index] == KIND_ALL) all++;
+            if (kinds[index] == KIND_SINGLE) single++;
+            // Stutters are about frames, the other writes happen whenever
+            if (kinds[index] != KIND_FRAME) continue;
+            frames++;
+            long time = times[index];
+            if (previous != -1) {
+                long interval = time - previous;
+                if (interval < IDLE_NANOS) {
+                    maxInterval = Math.max(maxInterval, interval);
+                    if (interval > STUTTER_NANOS) stutters++;
+                }
+            }
+            previous = time;
+        }
+        long first = times[(head - count + CAPACITY) % CAPACITY];
+        long last = times[(head - 1 + CAPACITY) % CAPACITY];
+        pw.println("    span: " + (last - first) / 1000000 + "ms | frames: " + frames
+                + " | all: " + all + " | single: " + single + " | max frame interval: "
+                + maxInterval / 1000 + "us | stutters: " + stutters);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+// Anything the LEDs or the preview can play, frame by frame at 60 fps. Decoded
+// CSVs and generated effects look the same to the players.
+public interface GlyphAnimation {
+
+    String getName();
+
+    // Zones written by every frame
+    int getFrameLength();
+
+    int getFrameCount();
+
+    // Brightness of every zone of a frame, 0 - Constants.MAX_PATTERN_BRIGHTNESS
+    void copyFrame(int frame, int[] out);
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Zone values at timestamps with an easing for every segment, sampled at any time.
+// Plain Java on purpose, the host extraction tool shares it with the app.
+//
+//   # comment
+//   zones 5
+//   rate 60
+//   frames 120
+//   <frame> <easing> <zone values, comma separated>
+//
+// Keyframe times are frames at the given rate. The easing of a keyframe is used
+// up to the next one: step holds the value, linear, in, out and in_out blend.
+public final class KeyframeAnimation implements GlyphAnimation {
+
+    public static final String EXTENSION = ".kf";
+
+    public static final int EASE_STEP = 0;
+    public static final int EASE_LINEAR = 1;
+    public static final int EASE_IN = 2;
+    public static final int EASE_OUT = 3;
+    public static final int EASE_IN_OUT = 4;
+
+    private static final String[] EASINGS = { "step", "linear", "in", "out", "in_out" };
+
+    public static final int DEFAULT_RATE = 60;
+
+    private final String mName;
+    private final int mZones;
+    private final int mRate;
+    private final int mFrameCount;
+    private final int[] mTimes;
+    private final byte[] mEasings;
+    // Values of every keyframe, one row of zones after the other
+    private final short[] mValues;
+
+    private KeyframeAnimation(String name, int zones, int rate, int frameCount,
+            int[] times, byte[] easings, short[] values) {
+        mName = name;
+        mZones = zones;
+        mRate = rate;
+        mFrameCount = frameCount;
+        mTimes = times;
+        mEasings = easings;
+        mValues = values;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    // Zones of the source device, before any zone map
+    @Override
+    public int getFrameLength() {
+        return mZones;
+    }
+
+    // Frames at the keyframe rate
+    @Override
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getRate() {
+        return mRate;
+    }
+
+    public int getKeyframeCount() {
+        return mTimes.length;
+    }
+
+    @Override
+    public void copyFrame(int frame, int[] out) {
+        sample(frame, out);
+    }
+
+    // Same animation at any frame rate, nanoseconds from its start
+    public void copyFrameAt(long nanos, int[] out) {
+        sample(nanos * mRate / 1e9, out);
+    }
+
+    private void sample(double position, int[] out) {
+        // Last keyframe at or before the position
+        int low = 0;
+        int high = mTimes.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mTimes[mid] <= position) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int from = low * mZones;
+        if (low == mTimes.length - 1 || mEasings[low] == EASE_STEP || position <= mTimes[low]) {
+            for (int i = 0; i < mZones; i++) out[i] = mValues[from + i];
+            return;
+        }
+        int to = from + mZones;
+        double eased = ease(mEasings[low],
+                (position - mTimes[low]) / (mTimes[low + 1] - mTimes[low]));
+        for (int i = 0; i < mZones; i++) {
+            out[i] = interpolate(mValues[from + i], mValues[to + i], eased);
+        }
+    }
+
+    private static int interpolate(int from, int to, double eased) {
+        return (int) Math.round(from + (to - from) * eased);
+    }
+
+    private static double ease(int easing, double t) {
+        switch (easing) {
+            case EASE_IN:
+                return t * t;
+            case EASE_OUT:
+                return 1 - (1 - t) * (1 - t);
+            case EASE_IN_OUT:
+                return t < 0.5 ? 2 * t * t : 1 - 2 * (1 - t) * (1 - t);
+            case EASE_STEP:
+                return 0;
+            default:
+                return t;
+        }
+    }
+
+    public static KeyframeAnimation parse(String name, Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        int zones = -1, rate = DEFAULT_RATE, frameCount = -1;
+        ArrayList<Integer> times = new ArrayList<>();
+        ArrayList<Byte> easings = new ArrayList<>();
+        short[] values = new short[0];
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] split = line.split("\\s+", 3);
+            if (split.length < 2) throw new IOException("Bad keyframe line: " + line);
+            try {
+                switch (split[0]) {
+                    case "zones":
+                        zones = Integer.parseInt(split[1]);
+                        continue;
+                    case "rate":
+                        rate = Integer.parseInt(split[1]);
+                        continue;
+                    case "frames":
+                        frameCount = Integer.parseInt(split[1]);
+                        continue;
+                }
+
+                int time = Integer.parseInt(split[0]);
+                int easing = Arrays.asList(EASINGS).indexOf(split[1]);
+                String[] zoneValues = split.length > 2 ? split[2].replace(" ", "").split(",") : new String[0];
+                if (zones <= 0 || rate <= 0) throw new IOException("Keyframe before header: " + line);
+                if (easing < 0) throw new IOException("Unknown easing: " + split[1]);
+                if (zoneValues.length != zones) throw new IOException("Keyframe length mismatch: " + line);
+                if (!times.isEmpty() && time <= times.get(times.size() - 1)) {
+                    throw new IOException("Keyframes out of order: " + line);
+                }
+
+                int offset = times.size() * zones;
+                if (offset + zones > values.length) {
+                    values = Arrays.copyOf(values, Math.max(values.length * 2, zones * 16));
+                }
+                for (int i = 0; i < zones; i++) {
+                    values[offset + i] = (short) Integer.parseInt(zoneValues[i]);
+                }
+                times.add(time);
+                easings.add((byte) easing);
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad keyframe line: " + line, e);
+            }
+        }
+        if (times.isEmpty()) throw new IOException("No keyframes in " + name);
+
+        int[] timeArray = new int[times.size()];
+        byte[] easingArray = new byte[easings.size()];
+        for (int i = 0; i < timeArray.length; i++) {
+            timeArray[i] = times.get(i);
+            easingArray[i] = easings.get(i);
+        }
+        if (frameCount < 0) frameCount = timeArray[timeArray.length - 1] + 1;
+        return new KeyframeAnimation(name, zones, rate, frameCount, timeArray, easingArray,
+                Arrays.copyOf(values, timeArray.length * zones));
+    }
+
+    public void write(Writer writer) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        builder.append("zones ").append(mZones).append('\n');
+        builder.append("rate ").append(mRate).append('\n');
+        builder.append("frames ").append(mFrameCount).append('\n');
+        for (int k = 0; k < mTimes.length; k++) {
+            builder.append(mTimes[k]).append(' ').append(EASINGS[mEasings[k]]).append(' ');
+            for (int i = 0; i < mZones; i++) {
+                if (i > 0) builder.append(',');
+                builder.append(mValues[k * mZones + i]);
+            }
+            builder.append('\n');
+        }
+        writer.write(builder.toString());
+    }
+
+    // Fewest keyframes found greedily that still give back every frame exactly. Each
+    // segment is stretched as far as any easing reproduces the frames in between.
+    public static KeyframeAnimation fromFrames(String name, int[][] frames) {
+        int zones = frames[0].length;
+        ArrayList<int[]> keyframes = new ArrayList<>();
+
+        int start = 0;
+        while (start < frames.length - 1) {
+            int bestEnd = start + 1;
+            int bestEasing = EASE_LINEAR;
+            for (int easing = EASE_STEP; easing <= EASE_IN_OUT; easing++) {
+                int end = start + 1;
+                while (end + 1 < frames.length && matches(frames, start, end + 1, easing)) end++;
+                // Ties go to the earlier easing, step and linear are the cheapest to sample
+                if (end > bestEnd) {
+                    bestEnd = end;
+                    bestEasing = easing;
+                }
+            }
+            keyframes.add(new int[] { start, bestEasing });
+            start = bestEnd;
+        }
+        keyframes.add(new int[] { frames.length - 1, EASE_STEP });
+
+        int[] times = new int[keyframes.size()];
+        byte[] easings = new byte[keyframes.size()];
+        short[] values = new short[keyframes.size() * zones];
+        for (int k = 0; k < times.length; k++) {
+            times[k] = keyframes.get(k)[0];
+            easings[k] = (byte) keyframes.get(k)[1];
+            for (int i = 0; i < zones; i++) {
+                values[k * zones + i] = (short) frames[times[k]][i];
+            }
+        }
+        return new KeyframeAnimation(name, zones, DEFAULT_RATE, frames.length, times, easings, values);
+    }
+
+    // Whether every frame strictly between start and end comes back from their blend
+    private static boolean matches(int[][] frames, int start, int end, int easing) {
+        for (int f = start + 1; f < end; f++) {
+            double eased = ease(easing, (f - start) / (double) (end - start));
+            for (int i = 0; i < frames[f].length; i++) {
+                if (interpolate(frames[start][i], frames[end][i], eased) != frames[f][i]) return false;
+            }
+        }
+        return true;
+    }
+}
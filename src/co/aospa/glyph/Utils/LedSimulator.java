@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+import co.aospa.glyph.Constants.DeviceProfile;
+import co.aospa.glyph.Constants.GlyphDevice;
+
+// Virtual sysfs for running the LED stack without Glyph hardware. While started,
+// every node path is redirected into a scratch directory that mirrors the device
+// nodes as plain files, and every write is recorded with its timestamp so frame
+// timing, write counts and the final state can be checked afterwards. The device
+// independent part lives in SimulatedNodes.
+public final class LedSimulator {
+
+    private static final String TAG = "GlyphLedSimulator";
+    private static final boolean DEBUG = true;
+
+    private static final int MAX_WRITES = 100000;
+
+    private static final SimulatedNodes nodes = new SimulatedNodes(MAX_WRITES);
+
+    public static boolean isActive() {
+        return nodes.isActive();
+    }
+
+    // Creates the fake nodes under the given directory, writes go there from now on.
+    // Anything holding a node open keeps the old path, restart it after this.
+    public static File start(File parent) throws IOException {
+        GlyphDevice device = DeviceProfile.get();
+        File dir = nodes.start(new File(parent, "glyph_simulator"), device.getAllPath(),
+                device.getFramePath(), device.getModePath(), device.getSinglePath(),
+                device.getPowershareActivePath(), device.getPowershareEnabledPath());
+        if (DEBUG) Log.d(TAG, "Started simulator | root: " + dir);
+        return dir;
+    }
+
+    public static void stop() {
+        if (!nodes.isActive()) return;
+        nodes.stop();
+        if (DEBUG) Log.d(TAG, "Stopped simulator | writes: " + nodes.getWrites().size());
+    }
+
+    public static void clear() {
+        nodes.clear();
+    }
+
+    public static String redirect(String path) {
+        return nodes.redirect(path);
+    }
+
+    public static void setNode(String path, String value) throws IOException {
+        nodes.setNode(path, value);
+    }
+
+    static void onWrite(String path, String value) {
+        nodes.onWrite(path, value);
+    }
+
+    public static List<SimulatedNodes.Write> getWrites() {
+        return nodes.getWrites();
+    }
+
+    public static Map<String, String> getState() {
+        return nodes.getState();
+    }
+
+    public static void dump(PrintWriter pw) {
+        nodes.dump(pw, DeviceProfile.get().getFramePath());
+    }
+}
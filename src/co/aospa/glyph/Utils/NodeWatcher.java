@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.os.FileObserver;
+import android.os.SystemClock;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructPollfd;
+import android.util.Log;
+
+import java.io.FileDescriptor;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Keeps sysfs and persist nodes open and notifies subscribers when their value changes.
+// All watched nodes share one thread: kernfs notifications (sysfs_notify) and inotify
+// are used when available, anything else is re-read with an adaptive backoff.
+public final class NodeWatcher {
+
+    private static final String TAG = "GlyphNodeWatcher";
+    private static final boolean DEBUG = true;
+
+    private static final int POLL_MIN_INTERVAL_MS = 250;
+    // Nodes without notifications must still react within about a second
+    private static final int POLL_MAX_INTERVAL_MS = 1000;
+    // Still re-read once in a while when notifications are supported, just in case
+    private static final int NOTIFY_TIMEOUT_MS = 60000;
+
+    public interface Callback {
+        void onNodeChanged(String path, int value);
+    }
+
+    private static final class Node {
+        private final String path;
+        private final byte[] buffer = new byte[64];
+        private FileDescriptor fd;
+        private FileObserver observer;
+        private Callback[] callbacks = new Callback[0];
+        private int value = 0;
+        // Last value handed to the callbacks, readInt() updates value behind our back
+        private int dispatched = 0;
+        private boolean notifySupported = false;
+        private volatile boolean dirty = false;
+        private long lastReadTime = 0;
+
+        private Node(String path) {
+            this.path = path;
+        }
+    }
+
+    private static final HashMap<String, Node> nodes = new HashMap<>();
+
+    private static Thread thread;
+    private static volatile FileDescriptor[] wakePipe;
+    private static boolean watchedChanged = true;
+    private static final byte[] wakeBuffer = new byte[16];
+    private static final byte[] wakeByte = { 1 };
+
+    private static long reads = 0;
+    private static long notifications = 0;
+
+    // Paths are redirected into the simulator while it runs, see LedSimulator
+    public static int readInt(String path) {
+        Node node = getNode(LedSimulator.redirect(path));
+        if (node == null) return 0;
+        synchronized (node) {
+            return read(node) ? node.value : 0;
+        }
+    }
+
+    public static String readLine(String path) {
+        Node node = getNode(LedSimulator.redirect(path));
+        if (node == null) return null;
+        synchronized (node) {
+            int length = pread(node);
+            if (length < 0) return null;
+            int end = 0;
+            while (end < length && node.buffer[end] != '\n') end++;
+            return new String(node.buffer, 0, end, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Returns the current value, callbacks only fire on changes, on the watcher thread
+    public static int watch(String path, Callback callback) {
+        path = LedSimulator.redirect(path);
+        Node node = getNode(path);
+        if (node == null) return 0;
+
+        synchronized (NodeWatcher.class) {
+            if (node.callbacks.length == 0) {
+                // Changes from before anyone watched are not reported
+                synchronized (node) {
+                    read(node);
+                    node.dispatched = node.value;
+                }
+            }
+            if (!Arrays.asList(node.callbacks).contains(callback)) {
+                node.callbacks = Arrays.copyOf(node.callbacks, node.callbacks.length + 1);
+                node.callbacks[node.callbacks.length - 1] = callback;
+            }
+            if (node.observer == null) {
+                // inotify catches values written from userspace, which kernfs does not notify
+                node.observer = new FileObserver(path, FileObserver.MODIFY) {
+                    @Override
+                    public void onEvent(int event, String file) {
+                        node.dirty = true;
+                        wake();
+                    }
+                };
+                node.observer.startWatching();
+            }
+            watchedChanged = true;
+            startThread();
+        }
+        wake();
+
+        synchronized (node) {
+            read(node);
+            return node.value;
+        }
+    }
+
+    public static void unwatch(String path, Callback callback) {
+        path = LedSimulator.redirect(path);
+        synchronized (NodeWatcher.class) {
+            Node node = nodes.get(path);
+            if (node == null) return;
+            ArrayList<Callback> callbacks = new ArrayList<>(Arrays.asList(node.callbacks));
+            if (!callbacks.remove(callback)) return;
+            node.callbacks = callbacks.toArray(new Callback[0]);
+            if (node.callbacks.length == 0 && node.observer != null) {
+                node.observer.stopWatching();
+                node.observer = null;
+            }
+            watchedChanged = true;
+        }
+        wake();
+    }
+
+    private static synchronized Node getNode(String path) {
+        Node node = nodes.get(path);
+        if (node != null) return node;
+        if (path == null || path.isBlank()) return null;
+
+        node = new Node(path);
+        try {
+            node.fd = Os.open(path, OsConstants.O_RDONLY | OsConstants.O_CLOEXEC, 0);
+        } catch (ErrnoException e) {
+            Log.w(TAG, "No such file " + path + " for reading", e);
+            return null;
+        }
+        // Prime the value, the first dispatch compares against it
+        read(node);
+        node.dispatched = node.value;
+        nodes.put(path, node);
+        return node;
+    }
+
+    private static int pread(Node node) {
+        try {
+            reads++;
+            node.lastReadTime = SystemClock.elapsedRealtime();
+            return Os.pread(node.fd, node.buffer, 0, node.buffer.length, 0);
+        } catch (ErrnoException | InterruptedIOException e) {
+            Log.e(TAG, "Could not read from file " + node.path, e);
+            return -1;
+        }
+    }
+
+    // Parses an optionally 0x prefixed integer, the same way FileUtils.readLineInt used to
+    private static boolean read(Node node) {
+        int length = pread(node);
+        if (length < 0) return false;
+        int i = 0;
+        boolean negative = false;
+        if (length >= 2 && node.buffer[0] == '0' && node.buffer[1] == 'x') i = 2;
+        if (i < length && node.buffer[i] == '-') {
+            negative = true;
+            i++;
+        }
+        int value = 0;
+        for (; i < length && node.buffer[i] >= '0' && node.buffer[i] <= '9'; i++) {
+            value = value * 10 + (node.buffer[i] - '0');
+        }
+        node.value = negative ? -value : value;
+        return true;
+    }
+
+    private static void wake() {
+        FileDescriptor[] pipe = wakePipe;
+        if (pipe == null) return;
+        try {
+            Os.write(pipe[1], wakeByte, 0, 1);
+        } catch (ErrnoException | InterruptedIOException e) {}
+    }
+
+    private static void startThread() {
+        if (thread != null) return;
+        try {
+            wakePipe = Os.pipe2(OsConstants.O_CLOEXEC | OsConstants.O_NONBLOCK);
+        } catch (ErrnoException e) {
+            Log.e(TAG, "Could not create wake up pipe", e);
+            return;
+        }
+        thread = new Thread(NodeWatcher::run, "GlyphNodeWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void run() {
+        Node[] watched = new Node[0];
+        StructPollfd[] pollFds = new StructPollfd[0];
+        int pollInterval = POLL_MIN_INTERVAL_MS;
+
+        while (true) {
+            synchronized (NodeWatcher.class) {
+                if (watchedChanged) {
+                    watchedChanged = false;
+                    ArrayList<Node> list = new ArrayList<>();
+                    for (Node node : nodes.values()) {
+                        if (node.callbacks.length > 0) list.add(node);
+                    }
+                    watched = list.toArray(new Node[0]);
+                    pollFds = new StructPollfd[watched.length + 1];
+                    for (int i = 0; i < pollFds.length; i++) {
+                        pollFds[i] = new StructPollfd();
+                        if (i < watched.length) {
+                            pollFds[i].fd = watched[i].fd;
+                            pollFds[i].events = (short) (OsConstants.POLLPRI | OsConstants.POLLERR);
+                        } else {
+                            pollFds[i].fd = wakePipe[0];
+                            pollFds[i].events = (short) OsConstants.POLLIN;
+                        }
+                    }
+                    pollInterval = POLL_MIN_INTERVAL_MS;
+                }
+            }
+
+            boolean polling = false;
+            for (Node node : watched) {
+                if (!node.notifySupported) polling = true;
+            }
+            int timeout = watched.length == 0 ? -1 : polling ? pollInterval : NOTIFY_TIMEOUT_MS;
+
+            int ready;
+            try {
+                for (StructPollfd pollFd : pollFds) pollFd.revents = 0;
+                ready = Os.poll(pollFds, timeout);
+            } catch (ErrnoException e) {
+                Log.e(TAG, "Could not poll watched nodes", e);
+                SystemClock.sleep(POLL_MAX_INTERVAL_MS);
+                continue;
+            }
+
+            if ((pollFds[watched.length].revents & OsConstants.POLLIN) != 0) {
+                try {
+                    while (Os.read(wakePipe[0], wakeBuffer, 0, wakeBuffer.length) > 0) {}
+                } catch (ErrnoException | InterruptedIOException e) {}
+            }
+
+            boolean changed = false;
+            for (int i = 0; i < watched.length; i++) {
+                Node node = watched[i];
+                boolean notified = (pollFds[i].revents & (OsConstants.POLLPRI | OsConstants.POLLERR)) != 0;
+                boolean timedOut = ready == 0 && (polling ? !node.notifySupported : true);
+                if (notified || node.dirty || timedOut) {
+                    if (notified || node.dirty) notifications++;
+                    node.dirty = false;
+                    boolean nodeChanged = dispatch(node, notified);
+                    // Some nodes report POLLPRI on every poll, only trust one that came with a change
+                    if (notified && nodeChanged && !node.notifySupported) {
+                        if (DEBUG) Log.d(TAG, "Node supports notifications | path: " + node.path);
+                        node.notifySupported = true;
+                    }
+                    changed |= nodeChanged;
+                }
+            }
+
+            if (changed) {
+                pollInterval = POLL_MIN_INTERVAL_MS;
+            } else if (ready == 0 && polling) {
+                pollInterval = Math.min(pollInterval * 2, POLL_MAX_INTERVAL_MS);
+            }
+        }
+    }
+
+    private static boolean dispatch(Node node, boolean notified) {
+        int value;
+        long latency;
+        Callback[] callbacks;
+        synchronized (node) {
+            latency = notified ? 0 : SystemClock.elapsedRealtime() - node.lastReadTime;
+            if (!read(node) || node.value == node.dispatched) return false;
+            value = node.value;
+            node.dispatched = value;
+            callbacks = node.callbacks;
+        }
+
+        if (DEBUG) Log.d(TAG, "Node changed | path: " + node.path + " | value: " + value
+                + " | detection latency: <= " + latency + "ms | reads: " + reads
+                + " | notifications: " + notifications);
+        for (Callback callback : callbacks) {
+            callback.onNodeChanged(node.path, value);
+        }
+        return true;
+    }
+}
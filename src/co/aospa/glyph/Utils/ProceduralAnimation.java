@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+// Effects computed from a few parameters instead of stored rows, sampled by frame
+// at 60 fps or at any time. The ramp fades the essential light in, breathing pulses
+// the LED being charged.
+public final class ProceduralAnimation implements GlyphAnimation {
+
+    public static final int EASE_LINEAR = 0;
+    public static final int EASE_IN = 1;
+    public static final int EASE_OUT = 2;
+    public static final int EASE_IN_OUT = 3;
+
+    private static final int RAMP = 0;
+    private static final int BREATHE = 1;
+
+    private final String mName;
+    private final int mType;
+    private final int mFrameLength;
+    private final int[] mZones;
+    private final long mPeriodNanos;
+    private final int mLoops;
+    private final int mFrames;
+    private final int mFrom;
+    private final int mTo;
+    private final int mEasing;
+
+    private ProceduralAnimation(String name, int type, int frameLength, int[] zones,
+            long periodMs, int loops, int from, int to, int easing) {
+        mName = name;
+        mType = type;
+        mFrameLength = frameLength;
+        mZones = zones;
+        mPeriodNanos = Math.max(periodMs, 1) * 1_000_000L;
+        mLoops = Math.max(loops, 1);
+        mFrames = Math.max(1, Math.round(mPeriodNanos * mLoops
+                / (float) AnimationTimeline.FRAME_INTERVAL_NANOS));
+        mFrom = from;
+        mTo = to;
+        mEasing = easing;
+    }
+
+    // Every zone goes from one brightness to the other, ending exactly on it
+    public static ProceduralAnimation ramp(String name, int frameLength, int[] zones,
+            long durationMs, int from, int to, int easing) {
+        return new ProceduralAnimation(name, RAMP, frameLength, zones, durationMs, 1,
+                from, to, easing);
+    }
+
+    // Smooth sine from low up to high and back, starting low, once per period
+    public static ProceduralAnimation breathe(String name, int frameLength, int[] zones,
+            long periodMs, int loops, int low, int high) {
+        return new ProceduralAnimation(name, BREATHE, frameLength, zones, periodMs, loops,
+                low, high, EASE_LINEAR);
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public int getFrameLength() {
+        return mFrameLength;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return mFrames;
+    }
+
+    public long getDurationNanos() {
+        return mPeriodNanos * mLoops;
+    }
+
+    @Override
+    public void copyFrame(int frame, int[] out) {
+        copyFrameAt(frame * AnimationTimeline.FRAME_INTERVAL_NANOS, out);
+    }
+
+    // Nanoseconds from the start, the last value holds once it is over
+    public void copyFrameAt(long nanos, int[] out) {
+        for (int i = 0; i < mFrameLength; i++) out[i] = 0;
+
+        float level;
+        if (mType == RAMP) {
+            // The last frame lands exactly on the target
+            long end = (mFrames - 1) * AnimationTimeline.FRAME_INTERVAL_NANOS;
+            level = ease(end > 0 ? Math.min(nanos / (float) end, 1f) : 1f);
+        } else {
+            long position = Math.min(nanos, getDurationNanos()) % mPeriodNanos;
+            level = (1 - (float) Math.cos(2 * Math.PI * position / mPeriodNanos)) / 2;
+        }
+        int value = Math.round(mFrom + (mTo - mFrom) * level);
+        for (int zone : mZones) {
+            out[zone] = value;
+        }
+    }
+
+    private float ease(float t) {
+        switch (mEasing) {
+            case EASE_IN:
+                return t * t;
+            case EASE_OUT:
+                return 1 - (1 - t) * (1 - t);
+            case EASE_IN_OUT:
+                return t < 0.5f ? 2 * t * t : 1 - 2 * (1 - t) * (1 - t);
+            default:
+                return t;
+        }
+    }
+}
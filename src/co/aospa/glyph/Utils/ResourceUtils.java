@@ -16,7 +16,6 @@
 
 package co.aospa.glyph.Utils;
 
-import android.content.Context;
 import android.content.res.AssetManager;
 import android.content.res.Resources;
 import android.util.Log;
@@ -25,6 +24,8 @@ import com.android.internal.util.ArrayUtils;
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 
 import co.aospa.glyph.R;
 import co.aospa.glyph.Constants.Constants;
@@ -34,95 +35,137 @@ public final class ResourceUtils {
     private static final String TAG = "GlyphResourceUtils";
     private static final boolean DEBUG = true;
 
-    private static Context context = Constants.CONTEXT;
+    // Looked up on use, nothing is touched before the context is set
+    private static Resources getResources() {
+        return Constants.getContext().getResources();
+    }
 
-    private static final AssetManager assetManager = context.getAssets();
-    private static final Resources resources = context.getResources();
+    private static AssetManager getAssets() {
+        return Constants.getContext().getAssets();
+    }
 
     private static String[] callAnimations = null;
     private static String[] notificationAnimations = null;
 
+    // getIdentifier is a slow string lookup, resolve each name only once
+    private static final HashMap<String, Integer> identifiers = new HashMap<>();
+
     public static int getIdentifier(String id, String type) {
-        return context.getResources().getIdentifier(id, type, context.getPackageName());
+        String key = type + "/" + id;
+        synchronized (identifiers) {
+            Integer identifier = identifiers.get(key);
+            if (identifier == null) {
+                identifier = getResources().getIdentifier(id, type, Constants.getContext().getPackageName());
+                identifiers.put(key, identifier);
+            }
+            return identifier;
+        }
     }
 
     public static Boolean getBoolean(String id) {
-        return context.getResources().getBoolean(getIdentifier(id, "bool"));
+        return getResources().getBoolean(getIdentifier(id, "bool"));
     }
 
     public static String getString(String id) {
-        return context.getResources().getString(getIdentifier(id, "string"));
+        return getResources().getString(getIdentifier(id, "string"));
     }
 
     public static int getInteger(String id) {
-        return context.getResources().getInteger(getIdentifier(id, "integer"));
+        return getResources().getInteger(getIdentifier(id, "integer"));
     }
 
     public static String[] getStringArray(String id) {
-        return context.getResources().getStringArray(getIdentifier(id, "array"));
+        return getResources().getStringArray(getIdentifier(id, "array"));
     }
 
     public static int[] getIntArray(String id) {
-        return context.getResources().getIntArray(getIdentifier(id, "array"));
+        return getResources().getIntArray(getIdentifier(id, "array"));
+    }
+
+    // Animations can ship as a CSV, a keyframe file or both, list each name once
+    private static String[] listAnimations(String dir) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        try {
+            for (String asset : getAssets().list(dir)) {
+                if (asset.endsWith(".csv")) {
+                    names.add(asset.substring(0, asset.length() - ".csv".length()));
+                } else if (asset.endsWith(KeyframeAnimation.EXTENSION)) {
+                    names.add(asset.substring(0, asset.length() - KeyframeAnimation.EXTENSION.length()));
+                }
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return names.toArray(new String[0]);
     }
 
     public static String[] getCallAnimations() {
         if (callAnimations == null) {
-            try {
-                String[] assets = assetManager.list("call");
-                for (int i=0; i < assets.length; i++) {
-                    assets[i] = assets[i].replaceAll(".csv", "");
-                }
-                callAnimations = assets;
-            } catch (IOException e) { }
+            callAnimations = listAnimations("call");
         }
         return callAnimations;
     }
 
     public static String[] getNotificationAnimations() {
         if (notificationAnimations == null) {
-            try {
-                String[] assets = assetManager.list("notification");
-                for (int i=0; i < assets.length; i++) {
-                    assets[i] = assets[i].replaceAll(".csv", "");
-                }
-                notificationAnimations = assets;
-            } catch (IOException e) { }
+            notificationAnimations = listAnimations("notification");
         }
         return notificationAnimations;
     }
 
-    public static InputStream getCallAnimation(String name) throws IOException {
+    // Asset path of an animation without its extension
+    private static String getCallAnimationPath(String name) {
         if (callAnimations == null) getCallAnimations();
 
         if (ArrayUtils.contains(callAnimations, name))
-            return assetManager.open("call/" + name + ".csv");
+            return "call/" + name;
 
-        return assetManager.open("call/" + ResourceUtils.getString("glyph_settings_call_animations_default") + ".csv");
+        return "call/" + ResourceUtils.getString("glyph_settings_call_animations_default");
     }
 
-    public static InputStream getNotificationAnimation(String name) throws IOException {
+    private static String getNotificationAnimationPath(String name) {
         if (notificationAnimations == null) getNotificationAnimations();
 
         if (ArrayUtils.contains(notificationAnimations, name))
-            return assetManager.open("notification/" + name + ".csv");
+            return "notification/" + name;
 
-        return assetManager.open("call/" + ResourceUtils.getString("glyph_settings_notifs_animations_default") + ".csv");
+        return "call/" + ResourceUtils.getString("glyph_settings_notifs_animations_default");
     }
 
-    public static InputStream getAnimation(String name) throws IOException {
+    private static String getAnimationPath(String name) {
         if (callAnimations == null) getCallAnimations();
         if (notificationAnimations == null) getNotificationAnimations();
 
         if (ArrayUtils.contains(callAnimations, name)) {
-            return getCallAnimation(name);
+            return getCallAnimationPath(name);
         }
 
         if (ArrayUtils.contains(notificationAnimations, name)) {
-            return getNotificationAnimation(name);
+            return getNotificationAnimationPath(name);
         }
 
-        return assetManager.open(name + ".csv");
+        return name;
+    }
+
+    public static InputStream getCallAnimation(String name) throws IOException {
+        return getAssets().open(getCallAnimationPath(name) + ".csv");
+    }
+
+    public static InputStream getNotificationAnimation(String name) throws IOException {
+        return getAssets().open(getNotificationAnimationPath(name) + ".csv");
+    }
+
+    public static InputStream getAnimation(String name) throws IOException {
+        return getAssets().open(getAnimationPath(name) + ".csv");
     }
 
+    // Keyframe version of an animation, null when it only ships as a CSV
+    public static InputStream getKeyframes(String name, boolean call) {
+        String path = call ? getCallAnimationPath(name) : getAnimationPath(name);
+        try {
+            return getAssets().open(path + KeyframeAnimation.EXTENSION);
+        } catch (IOException e) {
+            return null;
+        }
+    }
 }
@@ -20,162 +20,200 @@ package co.aospa.glyph.Utils;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.UserHandle;
 import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
 import co.aospa.glyph.Constants.Constants;
 import co.aospa.glyph.Manager.AnimationManager;
 import co.aospa.glyph.Manager.SettingsManager;
 import co.aospa.glyph.Manager.StatusManager;
-import co.aospa.glyph.Services.AutoBrightnessService;
-import co.aospa.glyph.Services.CallReceiverService;
-import co.aospa.glyph.Services.ChargingService;
-import co.aospa.glyph.Services.FlipToGlyphService;
-import co.aospa.glyph.Services.MusicVisualizerService;
-import co.aospa.glyph.Services.PowershareService;
-import co.aospa.glyph.Services.VolumeLevelService;
+import co.aospa.glyph.Services.GlyphEngineService;
 
 public final class ServiceUtils {
 
     private static final String TAG = "GlyphServiceUtils";
     private static final boolean DEBUG = true;
 
-    private static Context context = Constants.CONTEXT;
-
-    private static void startCallReceiverService() {
-        if (DEBUG) Log.d(TAG, "Starting Glyph call receiver service");
-        context.startServiceAsUser(new Intent(context, CallReceiverService.class),
-                UserHandle.CURRENT);
+    private static Context getContext() {
+        return Constants.getContext();
     }
 
-    private static void stopCallReceiverService() {
-        if (DEBUG) Log.d(TAG, "Stopping Glyph call receiver service");
-        context.stopServiceAsUser(new Intent(context, CallReceiverService.class),
-                UserHandle.CURRENT);
-    }
-
-    private static void startChargingService() {
-        if (DEBUG) Log.d(TAG, "Starting Glyph charging service");
-        context.startServiceAsUser(new Intent(context, ChargingService.class),
-                UserHandle.CURRENT);
-    }
-
-    private static void stopChargingService() {
-        if (DEBUG) Log.d(TAG, "Stopping Glyph charging service");
-        context.stopServiceAsUser(new Intent(context, ChargingService.class),
-                UserHandle.CURRENT);
-    }
-
-    private static void startFlipToGlyphService() {
-        if (DEBUG) Log.d(TAG, "Starting Flip to Glyph service");
-        context.startServiceAsUser(new Intent(context, FlipToGlyphService.class),
-                UserHandle.CURRENT);
+    // Settings tend to change in bursts (brightness slider, master switch), only the
+    // last state matters.
+    private static final long RECONCILE_DELAY_MS = 150;
+
+    private static final String[] MODULES = {
+        GlyphEngineService.MODULE_CHARGING,
+        GlyphEngineService.MODULE_POWERSHARE,
+        GlyphEngineService.MODULE_CALL,
+        GlyphEngineService.MODULE_FLIP,
+        GlyphEngineService.MODULE_MUSIC_VISUALIZER,
+        GlyphEngineService.MODULE_VOLUME_LEVEL,
+        GlyphEngineService.MODULE_AUTO_BRIGHTNESS
+    };
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+
+    // What the engine reported running, null until it did
+    private static boolean[] running = null;
+    // Request the engine has not answered yet, null when there is none
+    private static boolean[] requested = null;
+    // Configs the running modules were created with
+    private static int[] configs = new int[MODULES.length];
+
+    private static int requests = 0;
+    private static int reconciles = 0;
+    private static int transitions = 0;
+    private static int skippedTransitions = 0;
+
+    private static final Runnable reconcile = new Runnable() {
+        @Override
+        public void run() {
+            reconcile();
+        }
+    };
+
+    private static boolean startEngine(String[] modules, String[] restart) {
+        if (DEBUG) Log.d(TAG, "Starting engine | modules: " + Arrays.toString(modules)
+                + " | restart: " + Arrays.toString(restart));
+        Intent intent = new Intent(getContext(), GlyphEngineService.class);
+        intent.putExtra(GlyphEngineService.EXTRA_MODULES, modules);
+        intent.putExtra(GlyphEngineService.EXTRA_RESTART_MODULES, restart);
+        try {
+            return getContext().startServiceAsUser(intent, UserHandle.CURRENT) != null;
+        } catch (IllegalStateException | SecurityException e) {
+            Log.e(TAG, "Could not start engine", e);
+            return false;
+        }
     }
 
-    private static void stopFlipToGlyphService() {
-        if (DEBUG) Log.d(TAG, "Stopping Flip to Glyph service");
-        context.stopServiceAsUser(new Intent(context, FlipToGlyphService.class),
-                UserHandle.CURRENT);
+    private static void stopEngine() {
+        if (DEBUG) Log.d(TAG, "Stopping engine");
+        getContext().stopServiceAsUser(new Intent(getContext(), GlyphEngineService.class), UserHandle.CURRENT);
     }
 
-    public static void startMusicVisualizerService() {
-        if (DEBUG) Log.d(TAG, "Starting Music Visualizer service");
-        context.startServiceAsUser(new Intent(context, MusicVisualizerService.class),
-                UserHandle.CURRENT);
+    // Called by the engine every time its modules changed, an empty set once it stopped
+    public static synchronized void onEngineModulesChanged(Collection<String> modules) {
+        boolean[] reported = new boolean[MODULES.length];
+        for (int i = 0; i < MODULES.length; i++) {
+            reported[i] = modules.contains(MODULES[i]);
+        }
+        running = reported;
+        requested = null;
+        if (DEBUG) Log.d(TAG, "Engine modules changed | modules: " + modules);
     }
 
-    protected static void stopMusicVisualizerService() {
-        if (DEBUG) Log.d(TAG, "Stopping Music Visualizer service");
-        context.stopServiceAsUser(new Intent(context, MusicVisualizerService.class),
-                UserHandle.CURRENT);
+    private static boolean[] getDesiredFlags() {
+        boolean[] desired = new boolean[MODULES.length];
+        if (!SettingsManager.isGlyphEnabled()) return desired;
+        desired[0] = SettingsManager.isGlyphChargingEnabled();
+        desired[1] = SettingsManager.isGlyphPowershareEnabled();
+        desired[2] = SettingsManager.isGlyphCallEnabled();
+        desired[3] = SettingsManager.isGlyphFlipEnabled();
+        desired[4] = SettingsManager.isGlyphMusicVisualizerEnabled();
+        desired[5] = SettingsManager.isGlyphVolumeLevelEnabled();
+        desired[6] = SettingsManager.isGlyphAutoBrightnessEnabled();
+        return desired;
     }
 
-    private static void startPowershareService() {
-        if (DEBUG) Log.d(TAG, "Starting Glyph powershare service");
-        context.startServiceAsUser(new Intent(context, PowershareService.class),
-                UserHandle.CURRENT);
+    public static String[] getDesiredModules() {
+        return toModules(getDesiredFlags());
     }
 
-    private static void stopPowershareService() {
-        if (DEBUG) Log.d(TAG, "Stopping Glyph powershare service");
-        context.stopServiceAsUser(new Intent(context, PowershareService.class),
-                UserHandle.CURRENT);
+    private static String[] toModules(boolean[] flags) {
+        List<String> modules = new ArrayList<>();
+        for (int i = 0; i < MODULES.length; i++) {
+            if (flags[i]) modules.add(MODULES[i]);
+        }
+        return modules.toArray(new String[0]);
     }
 
-    public static void startVolumeLevelService() {
-        if (DEBUG) Log.d(TAG, "Starting Volume Level service");
-        context.startServiceAsUser(new Intent(context, VolumeLevelService.class),
-                UserHandle.CURRENT);
+    // Settings a running module reads when it is started, a change starts it again
+    private static int[] getDesiredConfigs() {
+        int[] desired = new int[MODULES.length];
+        desired[0] = SettingsManager.isGlyphChargingRateEnabled() ? 1 : 0;
+        return desired;
     }
 
-    protected static void stopVolumeLevelService() {
-        if (DEBUG) Log.d(TAG, "Stopping Volume Listener service");
-        context.stopServiceAsUser(new Intent(context, VolumeLevelService.class),
-                UserHandle.CURRENT);
+    // Brightness is not a service, notifications and the essential LED use it without
+    // any module running, so it is applied even when there is nothing to reconcile
+    public static void applyBrightness() {
+        int brightness = SettingsManager.isGlyphEnabled() ? SettingsManager.getGlyphBrightness() : -1;
+        if (brightness != -1 && brightness != Constants.getBrightness()) {
+            Constants.setBrightness(brightness);
+            if (StatusManager.isEssentialLedActive())
+                AnimationManager.playEssential();
+        }
     }
 
-    private static void startAutoBrightnessService() {
-        if (DEBUG) Log.d(TAG, "Starting Auto Brightness service");
-        context.startServiceAsUser(new Intent(context, AutoBrightnessService.class),
-                UserHandle.CURRENT);
-    }
+    public static void checkGlyphService() {
+        // Right away so the slider stays responsive
+        applyBrightness();
 
-    private static void stopAutoBrightnessService() {
-        if (DEBUG) Log.d(TAG, "Stopping Auto Brightness service");
-        context.stopServiceAsUser(new Intent(context, AutoBrightnessService.class),
-                UserHandle.CURRENT);
+        synchronized (ServiceUtils.class) {
+            requests++;
+        }
+        handler.removeCallbacks(reconcile);
+        handler.postDelayed(reconcile, RECONCILE_DELAY_MS);
     }
 
-    public static void checkGlyphService() {
-        if (SettingsManager.isGlyphEnabled()) {
-            if (SettingsManager.getGlyphBrightness() != Constants.getBrightness()) {
-                Constants.setBrightness(SettingsManager.getGlyphBrightness());
-                if (StatusManager.isEssentialLedActive())
-                    AnimationManager.playEssential();
+    // Diffs against what the engine reported, or against the request it is still working
+    // on. Nothing reported yet (first run, engine killed with the process) means a request.
+    private static synchronized void reconcile() {
+        boolean[] desired = getDesiredFlags();
+        int[] desiredConfigs = getDesiredConfigs();
+        boolean[] current = requested != null ? requested : running;
+        reconciles++;
+
+        boolean changed = current == null;
+        boolean[] restart = new boolean[MODULES.length];
+        for (int i = 0; i < MODULES.length; i++) {
+            boolean wasRunning = current != null && current[i];
+            // Config changes recreate the module instead of relying on it to re-read settings
+            restart[i] = wasRunning && desired[i] && configs[i] != desiredConfigs[i];
+            if (current != null && current[i] == desired[i] && !restart[i]) {
+                skippedTransitions++;
+                continue;
             }
-            if (SettingsManager.isGlyphChargingEnabled()) {
-                startChargingService();
-            } else {
-                stopChargingService();
-            }
-            if (SettingsManager.isGlyphPowershareEnabled()) {
-                startPowershareService();
-            } else {
-                stopPowershareService();
-            }
-            if (SettingsManager.isGlyphCallEnabled()) {
-                startCallReceiverService();
-            } else {
-                stopCallReceiverService();
-            }
-            if (SettingsManager.isGlyphFlipEnabled()) {
-                startFlipToGlyphService();
-            } else {
-                stopFlipToGlyphService();
-            }
-            if (SettingsManager.isGlyphMusicVisualizerEnabled()) {
-                startMusicVisualizerService();
-            } else {
-                stopMusicVisualizerService();
-            }
-            if (SettingsManager.isGlyphVolumeLevelEnabled()) {
-                startVolumeLevelService();
-            } else {
-                stopVolumeLevelService();
-            }
-            if (SettingsManager.isGlyphAutoBrightnessEnabled()) {
-                startAutoBrightnessService();
+            transitions++;
+            changed = true;
+        }
+
+        // The engine adds and removes modules itself, one call covers every transition
+        if (changed) {
+            String[] modules = toModules(desired);
+            if (modules.length > 0) {
+                // A failed start leaves nothing pending and keeps the old configs, the
+                // next reconcile tries again and still sees what has to be restarted
+                if (startEngine(modules, toModules(restart))) {
+                    requested = desired;
+                    configs = desiredConfigs;
+                } else {
+                    requested = null;
+                }
             } else {
-                stopAutoBrightnessService();
+                requested = desired;
+                configs = desiredConfigs;
+                stopEngine();
             }
         } else {
-            stopChargingService();
-            stopPowershareService();
-            stopCallReceiverService();
-            stopFlipToGlyphService();
-            stopMusicVisualizerService();
-            stopVolumeLevelService();
-            stopAutoBrightnessService();
+            configs = desiredConfigs;
         }
+
+        if (DEBUG) Log.d(TAG, "Reconciled modules | requests: " + requests
+                + " | reconciles: " + reconciles + " | transitions: " + transitions
+                + " | skipped: " + getSkippedTransitions());
+    }
+
+    // Module transitions avoided, both by diffing and by debouncing requests
+    public static synchronized int getSkippedTransitions() {
+        return skippedTransitions + (requests - reconciles) * MODULES.length;
     }
 }
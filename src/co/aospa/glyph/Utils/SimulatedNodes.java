@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Path redirection and write recording behind LedSimulator. Plain Java on purpose,
+// the host tests drive it without a device.
+public final class SimulatedNodes {
+
+    public static final class Write {
+        public final long timeNanos;
+        public final String path;
+        public final String value;
+
+        private Write(long timeNanos, String path, String value) {
+            this.timeNanos = timeNanos;
+            this.path = path;
+            this.value = value;
+        }
+    }
+
+    // Bounds the recording, the oldest half is dropped when it is full
+    private final int mMaxWrites;
+
+    // Null while stopped, the hot paths only read this
+    private volatile File mRoot = null;
+    private final ArrayList<Write> mWrites = new ArrayList<>();
+    private long mStartNanos = 0;
+    private long mDropped = 0;
+
+    public SimulatedNodes(int maxWrites) {
+        mMaxWrites = Math.max(maxWrites, 2);
+    }
+
+    public boolean isActive() {
+        return mRoot != null;
+    }
+
+    public File getRoot() {
+        return mRoot;
+    }
+
+    // Creates every node under the directory holding "0", writes go there from now on
+    public synchronized File start(File dir, String... paths) throws IOException {
+        if (mRoot != null) return mRoot;
+        deleteTree(dir);
+        for (String path : paths) {
+            if (path == null || path.isBlank()) continue;
+            writeNode(new File(dir, path), "0");
+        }
+
+        mWrites.clear();
+        mDropped = 0;
+        mStartNanos = System.nanoTime();
+        mRoot = dir;
+        return dir;
+    }
+
+    public synchronized void stop() {
+        File dir = mRoot;
+        if (dir == null) return;
+        mRoot = null;
+        deleteTree(dir);
+    }
+
+    public synchronized void clear() {
+        mWrites.clear();
+        mDropped = 0;
+        mStartNanos = System.nanoTime();
+    }
+
+    // Where a node is read and written, the path itself unless the simulator runs
+    public String redirect(String path) {
+        File dir = mRoot;
+        if (dir == null || path == null || path.isBlank()) return path;
+        return new File(dir, path).getPath();
+    }
+
+    // Changes a node the way the kernel would, watchers are notified through inotify
+    public void setNode(String path, String value) throws IOException {
+        File dir = mRoot;
+        if (dir == null) throw new IllegalStateException("Simulator is not running");
+        writeNode(new File(dir, path), value);
+    }
+
+    public void onWrite(String path, String value) {
+        if (mRoot == null) return;
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (mWrites.size() >= mMaxWrites) {
+                mWrites.subList(0, mMaxWrites / 2).clear();
+                mDropped += mMaxWrites / 2;
+            }
+            mWrites.add(new Write(now, path, value));
+        }
+    }
+
+    public synchronized List<Write> getWrites() {
+        return new ArrayList<>(mWrites);
+    }
+
+    public synchronized long getDropped() {
+        return mDropped;
+    }
+
+    // Last value written to each node
+    public synchronized Map<String, String> getState() {
+        LinkedHashMap<String, String> state = new LinkedHashMap<>();
+        for (Write write : mWrites) {
+            state.put(write.path, write.value);
+        }
+        return state;
+    }
+
+    // Write counts and the timing of the writes to the frame node
+    public synchronized void dump(PrintWriter pw, String framePath) {
+        pw.println("  simulator: " + (mRoot != null ? mRoot : "stopped"));
+        if (mWrites.isEmpty()) return;
+
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        long frames = 0, lastFrame = -1, minInterval = Long.MAX_VALUE, maxInterval = 0, intervals = 0;
+        for (Write write : mWrites) {
+            counts.merge(write.path, 1, Integer::sum);
+            if (!write.path.equals(framePath)) continue;
+            frames++;
+            if (lastFrame != -1) {
+                long interval = write.timeNanos - lastFrame;
+                minInterval = Math.min(minInterval, interval);
+                maxInterval = Math.max(maxInterval, interval);
+                intervals += interval;
+            }
+            lastFrame = write.timeNanos;
+        }
+
+        long elapsed = mWrites.get(mWrites.size() - 1).timeNanos - mStartNanos;
+        pw.println("    writes: " + mWrites.size() + " | dropped: " + mDropped
+                + " | per second: " + (elapsed > 0 ? mWrites.size() * 1000000000L / elapsed : 0));
+        if (frames > 1) {
+            pw.println("    frame interval: min " + minInterval / 1000 + "us | avg "
+                    + intervals / (frames - 1) / 1000 + "us | max " + maxInterval / 1000 + "us");
+        }
+        for (Map.Entry<String, String> entry : getState().entrySet()) {
+            pw.println("    " + entry.getKey() + ": " + counts.get(entry.getKey())
+                    + " writes | last: " + entry.getValue());
+        }
+    }
+
+    private static void writeNode(File file, String value) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(value);
+        }
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteTree(child);
+        }
+        file.delete();
+    }
+}
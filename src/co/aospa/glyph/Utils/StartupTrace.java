@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+// Time from the boot receiver to every enabled feature being ready. Each step is
+// logged with its offset and the whole startup shows up as one async systrace slice.
+public final class StartupTrace {
+
+    private static final String TAG = "GlyphStartupTrace";
+    private static final boolean DEBUG = true;
+
+    private static final String SECTION = "GlyphStartup";
+
+    private static long startNanos = -1;
+    private static long totalNanos = -1;
+    private static final ArrayList<String> steps = new ArrayList<>();
+    // Modules still starting, null until the enabled features are known
+    private static HashSet<String> pending = null;
+
+    public static synchronized void begin() {
+        startNanos = SystemClock.elapsedRealtimeNanos();
+        totalNanos = -1;
+        steps.clear();
+        pending = null;
+        Trace.beginAsyncSection(SECTION, 0);
+    }
+
+    public static synchronized void mark(String step) {
+        if (!isRunning()) return;
+        String line = step + " +" + getElapsedMillis() + "ms";
+        steps.add(line);
+        if (DEBUG) Log.d(TAG, line);
+    }
+
+    // Startup is over once every given module reported ready
+    public static synchronized void expect(String[] modules) {
+        if (!isRunning()) return;
+        pending = new HashSet<>(Arrays.asList(modules));
+        mark("enabled: " + Arrays.toString(modules));
+        if (pending.isEmpty()) finish();
+    }
+
+    public static synchronized void moduleReady(String module) {
+        if (!isRunning() || pending == null || !pending.remove(module)) return;
+        mark("ready: " + module);
+        if (pending.isEmpty()) finish();
+    }
+
+    private static boolean isRunning() {
+        return startNanos != -1 && totalNanos == -1;
+    }
+
+    private static long getElapsedMillis() {
+        return (SystemClock.elapsedRealtimeNanos() - startNanos) / 1000000;
+    }
+
+    private static void finish() {
+        totalNanos = SystemClock.elapsedRealtimeNanos() - startNanos;
+        Trace.endAsyncSection(SECTION, 0);
+        Log.i(TAG, "Startup done | took: " + totalNanos / 1000000 + "ms | steps: " + steps);
+    }
+
+    public static synchronized void dump(PrintWriter pw) {
+        if (startNanos == -1) {
+            pw.println("  startup: not traced");
+            return;
+        }
+        pw.println("  startup: " + (totalNanos != -1 ? totalNanos / 1000000 + "ms"
+                : "waiting for " + pending));
+        for (String step : steps) {
+            pw.println("    " + step);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+import co.aospa.glyph.Constants.Constants;
+import co.aospa.glyph.Constants.DeviceProfile;
+import co.aospa.glyph.Constants.GlyphDevice;
+
+// Compiled timelines kept in the cache directory, so a restarted process maps the
+// frames instead of parsing the CSVs again. A file only counts when it was written
+// by the same APK for the same device, anything else is rebuilt on first use.
+final class TimelineCache {
+
+    private static final String TAG = "GlyphTimelineCache";
+    private static final boolean DEBUG = true;
+
+    private static final String DIRECTORY = "timelines";
+
+    private static final int MAGIC = 0x474c544c; // GLTL
+    private static final int FORMAT = 1;
+    // magic, format, version code, last update time, device, source length, frame length, frame count
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 4;
+
+    private static File directory;
+    private static long versionCode;
+    private static long lastUpdateTime;
+    private static int device;
+
+    private static synchronized boolean init() {
+        if (directory != null) return true;
+        Context context;
+        try {
+            context = Constants.getContext();
+        } catch (IllegalStateException e) {
+            // Nothing to key the files on yet, decode from the CSVs until there is
+            if (DEBUG) Log.d(TAG, "No context yet, cache disabled");
+            return false;
+        }
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+            versionCode = info.getLongVersionCode();
+            lastUpdateTime = info.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+        GlyphDevice profile = DeviceProfile.get();
+        device = (profile.getName() + "/" + profile.getFrameLength()).hashCode();
+        directory = new File(context.getCacheDir(), DIRECTORY);
+        directory.mkdirs();
+        return true;
+    }
+
+    private static File getFile(String key) {
+        return new File(directory, key.replace('/', '@') + ".bin");
+    }
+
+    // Null when there is no file or it was written by another build
+    static AnimationTimeline load(String name, String key) {
+        if (!init()) return null;
+        File file = getFile(key);
+        if (!file.exists()) return null;
+
+        long start = System.nanoTime();
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE
+                    || buffer.getInt() != MAGIC
+                    || buffer.getInt() != FORMAT
+                    || buffer.getLong() != versionCode
+                    || buffer.getLong() != lastUpdateTime
+                    || buffer.getInt() != device) {
+                if (DEBUG) Log.d(TAG, "Stale timeline, rebuilding | key: " + key);
+                return null;
+            }
+            int sourceLength = buffer.getInt();
+            int frameLength = buffer.getInt();
+            int frameCount = buffer.getInt();
+            if (frameLength <= 0 || frameCount <= 0
+                    || buffer.remaining() != frameLength * frameCount * 2) {
+                if (DEBUG) Log.d(TAG, "Truncated timeline, rebuilding | key: " + key);
+                return null;
+            }
+            // The mapping stays valid once the channel is closed
+            ShortBuffer frames = buffer.slice().asShortBuffer();
+            if (DEBUG) Log.d(TAG, "Mapped timeline | key: " + key + " | frames: " + frameCount
+                    + " | took: " + (System.nanoTime() - start) / 1000 + "us");
+            return new AnimationTimeline(name, sourceLength, frameLength, frameCount, frames);
+        } catch (IOException e) {
+            if (DEBUG) Log.d(TAG, "Exception while mapping timeline | key: " + key + " | exception: " + e);
+            return null;
+        }
+    }
+
+    static void store(String key, AnimationTimeline timeline) {
+        if (!init()) return;
+        File file = getFile(key);
+
+        int length = timeline.getFrameLength() * timeline.getFrameCount();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length * 2);
+        buffer.putInt(MAGIC)
+                .putInt(FORMAT)
+                .putLong(versionCode)
+                .putLong(lastUpdateTime)
+                .putInt(device)
+                .putInt(timeline.getSourceLength())
+                .putInt(timeline.getFrameLength())
+                .putInt(timeline.getFrameCount());
+        for (int i = 0; i < timeline.getFrameCount(); i++) {
+            for (int j = 0; j < timeline.getFrameLength(); j++) {
+                buffer.putShort((short) timeline.getValue(i, j));
+            }
+        }
+        buffer.flip();
+
+        // Written aside and renamed, a crash never leaves a half written file behind
+        File temp;
+        try {
+            temp = File.createTempFile(file.getName(), ".tmp", directory);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write timeline " + key, e);
+            return;
+        }
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            FileChannel channel = stream.getChannel();
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write timeline " + key, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.w(TAG, "Could not store timeline " + key);
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Sensors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+// Replays accelerometer traces sampled at the hub's 200ms period through every
+// gesture, checking what is detected, how late, and that nothing fires on the
+// traces where nothing should.
+public class GestureEngineTest {
+
+    private static final long MS = 1_000_000L;
+
+    // Every gesture on one engine, like the app does
+    private static final class Run {
+        final FlipGesture flip = new FlipGesture();
+        final LiftGesture lift = new LiftGesture();
+        final ArrayList<long[]> flipChanges = new ArrayList<>();
+
+        Run(String trace) throws IOException {
+            GestureEngine engine = new GestureEngine();
+            flip.setListener((gesture, active, timestamp) ->
+                    flipChanges.add(new long[] { active ? 1 : 0, timestamp }));
+            engine.register(flip, 0);
+            engine.register(lift, 0);
+            replay(engine, trace);
+        }
+
+        int detections() {
+            return flip.getDetectionCount() + lift.getDetectionCount();
+        }
+    }
+
+    private static void replay(GestureEngine engine, String trace) throws IOException {
+        InputStream input = GestureEngineTest.class.getResourceAsStream("/traces/" + trace + ".csv");
+        assertNotNull("Missing trace " + trace, input);
+        ArrayList<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                rows.add(line.split(","));
+            }
+        }
+
+        long[] timestamps = new long[rows.size()];
+        float[] samples = new float[rows.size() * 3];
+        for (int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            timestamps[i] = Long.parseLong(row[0]);
+            for (int j = 0; j < 3; j++) {
+                samples[i * 3 + j] = Float.parseFloat(row[j + 1]);
+            }
+        }
+        engine.replay(timestamps, samples);
+    }
+
+    @Test
+    public void flipDetectedOnceSettledFaceDown() throws IOException {
+        Run run = new Run("flip_face_down");
+        assertEquals(1, run.flip.getDetectionCount());
+        assertEquals(2, run.flipChanges.size());
+
+        // A second face down and a second still, counted once the xy moving average
+        // has settled from the turn, which takes about two seconds at this rate
+        long latency = run.flipChanges.get(0)[1] - 4000 * MS;
+        assertTrue("Flip latency " + latency / MS + "ms", latency >= 1000 * MS && latency <= 3500 * MS);
+        // Ends as soon as it is picked up
+        assertEquals(0, run.flipChanges.get(1)[0]);
+        long endLatency = run.flipChanges.get(1)[1] - 9000 * MS;
+        assertTrue("Flip end latency " + endLatency / MS + "ms", endLatency >= 0 && endLatency <= 600 * MS);
+    }
+
+    @Test
+    public void liftDetectedOnTheJolt() throws IOException {
+        Run run = new Run("lift_from_face_down");
+        assertEquals(1, run.lift.getDetectionCount());
+        assertEquals(3000 * MS, run.lift.getLastDetectionTime());
+    }
+
+    @Test
+    public void noFalsePositives() throws IOException {
+        for (String trace : new String[] { "walking_pocket", "table_face_up", "face_down_moving" }) {
+            assertEquals(trace, 0, new Run(trace).detections());
+        }
+    }
+
+    @Test
+    public void unregisteredGestureSeesNothing() throws IOException {
+        GestureEngine engine = new GestureEngine();
+        LiftGesture lift = new LiftGesture();
+        engine.register(lift, 0);
+        engine.unregister(lift);
+        replay(engine, "lift_from_face_down");
+        assertEquals(0, lift.getDetectionCount());
+    }
+
+    @Test
+    public void sourceGetsTightestLatency() {
+        int[] latency = { 0 };
+        GestureEngine engine = new GestureEngine((e, maxReportLatencyUs) -> latency[0] = maxReportLatencyUs);
+        FlipGesture flip = new FlipGesture();
+        LiftGesture lift = new LiftGesture();
+        engine.register(flip, 500000);
+        assertEquals(500000, latency[0]);
+        engine.register(lift, 100000);
+        assertEquals(100000, latency[0]);
+        engine.unregister(lift);
+        assertEquals(500000, latency[0]);
+        engine.unregister(flip);
+        assertEquals(-1, latency[0]);
+    }
+}
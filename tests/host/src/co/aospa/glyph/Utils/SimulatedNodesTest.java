@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+// Writes the way FileUtils does, through the redirected path and then the recording,
+// and checks where they land and what is kept of them.
+public class SimulatedNodesTest {
+
+    private static final String FRAME = "/sys/devices/platform/soc/leds/frame_leds_effect";
+    private static final String ALL = "/sys/devices/platform/soc/leds/all_white_leds_br";
+
+    private File mParent;
+    private File mDir;
+    private SimulatedNodes mNodes;
+
+    @Before
+    public void setUp() throws IOException {
+        mParent = Files.createTempDirectory("glyph_nodes").toFile();
+        mDir = new File(mParent, "simulator");
+        mNodes = new SimulatedNodes(8);
+    }
+
+    @After
+    public void tearDown() {
+        mNodes.stop();
+        mParent.delete();
+    }
+
+    private void write(String path, String value) throws IOException {
+        try (FileWriter writer = new FileWriter(mNodes.redirect(path))) {
+            writer.write(value);
+        }
+        mNodes.onWrite(path, value);
+    }
+
+    private static String read(String path) throws IOException {
+        return new String(Files.readAllBytes(new File(path).toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void stoppedLeavesPathsAlone() {
+        assertFalse(mNodes.isActive());
+        assertEquals(FRAME, mNodes.redirect(FRAME));
+        mNodes.onWrite(FRAME, "1 2 3");
+        assertTrue(mNodes.getWrites().isEmpty());
+    }
+
+    @Test
+    public void startCreatesEveryNode() throws IOException {
+        assertEquals(mDir, mNodes.start(mDir, FRAME, ALL, "", null));
+        assertTrue(mNodes.isActive());
+        assertEquals(new File(mDir, FRAME).getPath(), mNodes.redirect(FRAME));
+        assertEquals("0", read(mNodes.redirect(FRAME)));
+        assertEquals("0", read(mNodes.redirect(ALL)));
+        // Blank paths are not redirected, a device without the node keeps skipping it
+        assertEquals("", mNodes.redirect(""));
+    }
+
+    @Test
+    public void writesLandInTheDirectoryAndAreRecorded() throws IOException {
+        mNodes.start(mDir, FRAME, ALL);
+        write(FRAME, "1 2 3");
+        write(ALL, "4095");
+        write(FRAME, "4 5 6");
+
+        assertEquals("4 5 6", read(mNodes.redirect(FRAME)));
+        List<SimulatedNodes.Write> writes = mNodes.getWrites();
+        assertEquals(3, writes.size());
+        assertEquals(FRAME, writes.get(0).path);
+        assertTrue(writes.get(2).timeNanos >= writes.get(0).timeNanos);
+
+        Map<String, String> state = mNodes.getState();
+        assertEquals("4 5 6", state.get(FRAME));
+        assertEquals("4095", state.get(ALL));
+    }
+
+    @Test
+    public void recordingIsBounded() throws IOException {
+        mNodes.start(mDir, FRAME);
+        for (int i = 0; i < 9; i++) write(FRAME, Integer.toString(i));
+        // Full at eight, the oldest four went
+        assertEquals(5, mNodes.getWrites().size());
+        assertEquals(4, mNodes.getDropped());
+        assertEquals("4", mNodes.getWrites().get(0).value);
+
+        mNodes.clear();
+        assertTrue(mNodes.getWrites().isEmpty());
+        assertEquals(0, mNodes.getDropped());
+    }
+
+    @Test
+    public void setNodeChangesTheFileOnly() throws IOException {
+        mNodes.start(mDir, ALL);
+        mNodes.setNode(ALL, "1");
+        assertEquals("1", read(mNodes.redirect(ALL)));
+        // Kernel side changes are not writes of the app
+        assertTrue(mNodes.getWrites().isEmpty());
+    }
+
+    @Test
+    public void stopRemovesTheNodes() throws IOException {
+        mNodes.start(mDir, FRAME);
+        mNodes.stop();
+        assertFalse(mNodes.isActive());
+        assertFalse(mDir.exists());
+        assertEquals(FRAME, mNodes.redirect(FRAME));
+        try {
+            mNodes.setNode(FRAME, "1");
+            fail("setNode while stopped");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+}
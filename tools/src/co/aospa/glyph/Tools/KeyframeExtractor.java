@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2024 Paranoid Android
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package co.aospa.glyph.Tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import co.aospa.glyph.Utils.KeyframeAnimation;
+
+// Converts animation CSVs into keyframe files and reports what it saves.
+//
+//   glyph_keyframe_extractor [--write] <csv or directory>...
+//
+// Every conversion is checked by sampling the keyframes back at 60 fps, a file
+// is only written when it gives back every frame of the CSV exactly and is
+// smaller than it. The app prefers a keyframe file over the CSV next to it.
+public final class KeyframeExtractor {
+
+    private static final int BENCHMARK_RUNS = 20;
+
+    public static void main(String[] args) throws IOException {
+        boolean write = false;
+        ArrayList<File> inputs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--write")) {
+                write = true;
+            } else {
+                collect(new File(arg), inputs);
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: glyph_keyframe_extractor [--write] <csv or directory>...");
+            System.exit(1);
+        }
+
+        System.out.println(String.format("%-40s %7s %6s %9s %9s %6s %9s %9s",
+                "animation", "frames", "keys", "csv B", "kf B", "size", "csv us", "kf us"));
+        long csvBytes = 0, keyframeBytes = 0, csvNanos = 0, keyframeNanos = 0;
+        int failures = 0;
+        for (File input : inputs) {
+            String csv = new String(Files.readAllBytes(input.toPath()), StandardCharsets.UTF_8);
+            int[][] frames = parseCsv(csv);
+            if (frames.length == 0) {
+                System.out.println(input + ": no frames, skipped");
+                continue;
+            }
+
+            String name = input.getName().replaceAll("\\.csv$", "");
+            StringWriter writer = new StringWriter();
+            KeyframeAnimation.fromFrames(name, frames).write(writer);
+            String keyframes = writer.toString();
+            KeyframeAnimation parsed = KeyframeAnimation.parse(name, new StringReader(keyframes));
+            if (!isLossless(parsed, frames)) {
+                System.out.println(input + ": conversion is not lossless, skipped");
+                failures++;
+                continue;
+            }
+
+            long csvTime = benchmark(() -> parseCsv(csv));
+            long keyframeTime = benchmark(() -> render(parse(name, keyframes)));
+            int csvSize = csv.getBytes(StandardCharsets.UTF_8).length;
+            int keyframeSize = keyframes.getBytes(StandardCharsets.UTF_8).length;
+            csvBytes += csvSize;
+            keyframeBytes += keyframeSize;
+            csvNanos += csvTime;
+            keyframeNanos += keyframeTime;
+            System.out.println(String.format("%-40s %7d %6d %9d %9d %5d%% %9d %9d",
+                    trim(input.getParentFile().getName() + "/" + name), frames.length,
+                    parsed.getKeyframeCount(), csvSize, keyframeSize,
+                    keyframeSize * 100 / csvSize, csvTime / 1000, keyframeTime / 1000));
+
+            if (write && keyframeSize < csvSize) {
+                File output = new File(input.getParentFile(), name + KeyframeAnimation.EXTENSION);
+                Files.write(output.toPath(), keyframes.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        if (csvBytes > 0) {
+            System.out.println(String.format("%-40s %7s %6s %9d %9d %5d%% %9d %9d", "total", "", "",
+                    csvBytes, keyframeBytes, keyframeBytes * 100 / csvBytes,
+                    csvNanos / 1000, keyframeNanos / 1000));
+        }
+        if (failures > 0) System.exit(2);
+    }
+
+    private static void collect(File file, ArrayList<File> inputs) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            Arrays.sort(children);
+            for (File child : children) collect(child, inputs);
+        } else if (file.getName().endsWith(".csv")) {
+            inputs.add(file);
+        }
+    }
+
+    private static String trim(String name) {
+        return name.length() > 40 ? name.substring(0, 37) + "..." : name;
+    }
+
+    // Same rules as AnimationTimeline: spaces and a trailing comma are ignored and
+    // decoding stops at the first line of a different length
+    private static int[][] parseCsv(String csv) {
+        ArrayList<int[]> frames = new ArrayList<>();
+        for (String line : csv.split("\n")) {
+            line = line.replace(" ", "").replace("\r", "");
+            line = line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
+            if (line.isEmpty()) continue;
+            String[] split = line.split(",");
+            if (!frames.isEmpty() && split.length != frames.get(0).length) break;
+            int[] frame = new int[split.length];
+            for (int i = 0; i < split.length; i++) {
+                frame[i] = Integer.parseInt(split[i]);
+            }
+            frames.add(frame);
+        }
+        return frames.toArray(new int[0][]);
+    }
+
+    private static KeyframeAnimation parse(String name, String keyframes) {
+        try {
+            return KeyframeAnimation.parse(name, new StringReader(keyframes));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // What the app does at decode time, every frame sampled once
+    private static int[][] render(KeyframeAnimation animation) {
+        int[][] frames = new int[animation.getFrameCount()][animation.getFrameLength()];
+        for (int i = 0; i < frames.length; i++) {
+            animation.copyFrame(i, frames[i]);
+        }
+        return frames;
+    }
+
+    private static boolean isLossless(KeyframeAnimation animation, int[][] frames) {
+        return animation.getFrameCount() == frames.length
+                && Arrays.deepEquals(render(animation), frames);
+    }
+
+    // Best of a few runs, the first ones only warm up the JIT
+    private static long benchmark(Runnable runnable) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < BENCHMARK_RUNS; i++) {
+            long start = System.nanoTime();
+            runnable.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}